@@ -0,0 +1,7 @@
+#!/bin/bash
+cd "$(dirname "$0")"
+
+# Benchmarks need the app classes (./compile.sh first) and the incubating Vector API module
+echo "Compiling benchmarks..."
+javac --add-modules jdk.incubator.vector -cp "out/production/ClashRoyaleDatingSim" -d out/bench bench/*.java || exit 1
+java --add-modules jdk.incubator.vector -cp "out/bench:out/production/ClashRoyaleDatingSim" CompatibilityBenchmark "$@"
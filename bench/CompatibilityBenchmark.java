@@ -0,0 +1,68 @@
+import java.util.Random;
+
+/**
+ * Compares scoring a whole CardTable with a scalar loop against the Vector API.
+ * The app scores cards one at a time through CardIndex, so this only matters for pools far larger
+ * than the catalog; it lives outside src because it needs the jdk.incubator.vector module.
+ * Run with ./bench.sh [cards]
+ */
+public class CompatibilityBenchmark {
+
+    public static void main(String[] args) {
+        int cards = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        CardTable table = syntheticTable(cards, new Random(42));
+        CardRanker.Preferences preferences = new CardRanker.Preferences(5, 8, "Long", 60, 80);
+        float[] out = new float[cards];
+
+        System.out.printf("Scoring %,d synthetic cards%n", cards);
+        for (boolean vector : new boolean[]{false, true}) {
+            // Warm up so the JIT has compiled the loop before measuring
+            for (int i = 0; i < 200; i++) {
+                scoreAll(table, preferences, out, vector);
+            }
+
+            int iterations = 0;
+            float checksum = 0;
+            long start = System.nanoTime();
+            long elapsed;
+            do {
+                scoreAll(table, preferences, out, vector);
+                checksum += out[iterations % cards];
+                iterations++;
+                elapsed = System.nanoTime() - start;
+            } while (elapsed < 2_000_000_000L);
+
+            double seconds = elapsed / 1e9;
+            System.out.printf("%-7s %8.1f passes/s  %8.1f M cards/s  (checksum %.1f)%n",
+                    vector ? "vector" : "scalar", iterations / seconds,
+                    iterations * (double) cards / seconds / 1e6, checksum);
+        }
+    }
+
+    private static void scoreAll(CardTable table, CardRanker.Preferences preferences, float[] out, boolean vector) {
+        if (vector) {
+            VectorCompatibilityScorer.scoreAll(table, preferences, out);
+            return;
+        }
+        for (int i = 0; i < table.size; i++) {
+            out[i] = CompatibilityScorer.score(table.heightInches[i], preferences.heightInches, CompatibilityScorer.HEIGHT_PENALTY)
+                    + CompatibilityScorer.score(table.rangeLevel[i], preferences.attackRange, CompatibilityScorer.RANGE_PENALTY)
+                    + CompatibilityScorer.score(table.freeTimePercent[i], preferences.freeTime, CompatibilityScorer.FREE_TIME_PENALTY)
+                    + CompatibilityScorer.score(table.humannessPercent[i], preferences.humanness, CompatibilityScorer.HUMANNESS_PENALTY);
+        }
+    }
+
+    private static CardTable syntheticTable(int cards, Random random) {
+        int[] heightInches = new int[cards];
+        int[] rangeLevel = new int[cards];
+        float[] freeTimePercent = new float[cards];
+        float[] humannessPercent = new float[cards];
+        for (int i = 0; i < cards; i++) {
+            heightInches[i] = 24 + random.nextInt(72);
+            rangeLevel[i] = 1 + random.nextInt(4);
+            freeTimePercent[i] = random.nextInt(101);
+            humannessPercent[i] = random.nextInt(101);
+        }
+        return new CardTable(heightInches, rangeLevel, freeTimePercent, humannessPercent);
+    }
+}
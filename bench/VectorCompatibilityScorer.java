@@ -0,0 +1,47 @@
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * SIMD version of CompatibilityBenchmark's whole-table scoring loop.
+ * Kept out of src so the app builds and runs without the jdk.incubator.vector module;
+ * bench.sh compiles it with --add-modules jdk.incubator.vector.
+ */
+class VectorCompatibilityScorer {
+
+    private static final VectorSpecies<Float> FLOATS = FloatVector.SPECIES_PREFERRED;
+    // Same bit size as FLOATS, so an int lane converts to exactly one float lane
+    private static final VectorSpecies<Integer> INTS = VectorSpecies.of(int.class, FLOATS.vectorShape());
+
+    static void scoreAll(CardTable table, CardRanker.Preferences preferences, float[] out) {
+        int length = table.size;
+        int i = 0;
+        int bound = FLOATS.loopBound(length);
+        for (; i < bound; i += FLOATS.length()) {
+            FloatVector height = (FloatVector) IntVector.fromArray(INTS, table.heightInches, i)
+                .convert(VectorOperators.I2F, 0);
+            FloatVector range = (FloatVector) IntVector.fromArray(INTS, table.rangeLevel, i)
+                .convert(VectorOperators.I2F, 0);
+
+            score(height, preferences.heightInches, CompatibilityScorer.HEIGHT_PENALTY)
+                .add(score(range, preferences.attackRange, CompatibilityScorer.RANGE_PENALTY))
+                .add(score(FloatVector.fromArray(FLOATS, table.freeTimePercent, i),
+                        preferences.freeTime, CompatibilityScorer.FREE_TIME_PENALTY))
+                .add(score(FloatVector.fromArray(FLOATS, table.humannessPercent, i),
+                        preferences.humanness, CompatibilityScorer.HUMANNESS_PENALTY))
+                .intoArray(out, i);
+        }
+        for (; i < length; i++) {
+            out[i] = CompatibilityScorer.score(table.heightInches[i], preferences.heightInches, CompatibilityScorer.HEIGHT_PENALTY)
+                    + CompatibilityScorer.score(table.rangeLevel[i], preferences.attackRange, CompatibilityScorer.RANGE_PENALTY)
+                    + CompatibilityScorer.score(table.freeTimePercent[i], preferences.freeTime, CompatibilityScorer.FREE_TIME_PENALTY)
+                    + CompatibilityScorer.score(table.humannessPercent[i], preferences.humanness, CompatibilityScorer.HUMANNESS_PENALTY);
+        }
+    }
+
+    // max(0, 100 - |preference - value| * penalty), lane by lane
+    private static FloatVector score(FloatVector values, float preference, float penalty) {
+        return values.sub(preference).abs().mul(-penalty).add(100f).max(0f);
+    }
+}
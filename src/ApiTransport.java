@@ -0,0 +1,135 @@
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import org.json.JSONObject;
+
+/**
+ * Sends requests to the Claude messages endpoint and the endpoints under it.
+ * All CharacterConversationSimulator instances share one transport so connections are reused between turns.
+ */
+public interface ApiTransport {
+
+    /**
+     * Sends a request to the messages endpoint or one below it
+     * @param method the HTTP method, e.g. "GET" or "POST"
+     * @param path appended to the messages endpoint ("" for the endpoint itself, "/batches" for batches),
+     *             or an absolute URL such as a batch's results_url
+     * @param body writes the UTF-8 encoded JSON request, or null for none
+     * @return the status code, headers and an open body stream
+     */
+    ApiResponse send(String method, String path, RequestBody body) throws IOException, InterruptedException;
+
+    /**
+     * Posts a JSON request body to the messages endpoint
+     * @param body writes the UTF-8 encoded JSON request
+     * @return the status code, headers and an open body stream
+     */
+    default ApiResponse post(RequestBody body) throws IOException, InterruptedException {
+        return send("POST", "", body);
+    }
+
+    /**
+     * Posts a request where a fast answer matters more than sending it once, such as a greeting.
+     * Transports that can hedge may send a duplicate if the first attempt is slow.
+     */
+    default ApiResponse postHedged(RequestBody body) throws IOException, InterruptedException {
+        return post(body);
+    }
+
+    /**
+     * A request body that can be written straight to the connection.
+     * writeTo may be called more than once if the request is resent.
+     */
+    interface RequestBody {
+        void writeTo(OutputStream out) throws IOException;
+
+        /**
+         * Gets the whole body if it is already in memory, or null if it is produced while writing
+         */
+        default byte[] bytes() {
+            return null;
+        }
+
+        /**
+         * How much of bytes() is the body; a reused buffer may be longer than the body it holds
+         */
+        default int length() {
+            byte[] bytes = bytes();
+            return bytes != null ? bytes.length : -1;
+        }
+
+        static RequestBody of(byte[] bytes) {
+            return new RequestBody() {
+                @Override
+                public void writeTo(OutputStream out) throws IOException {
+                    out.write(bytes);
+                }
+
+                @Override
+                public byte[] bytes() {
+                    return bytes;
+                }
+            };
+        }
+    }
+
+    /**
+     * A response whose body has not been read yet.
+     * Callers must either read the body to the end or close it.
+     */
+    class ApiResponse implements AutoCloseable {
+        public final int statusCode;
+        public final Map<String, List<String>> headers;
+        public final InputStream body;
+
+        public ApiResponse(int statusCode, Map<String, List<String>> headers, InputStream body) {
+            this.statusCode = statusCode;
+            this.headers = headers != null ? headers : Collections.emptyMap();
+            this.body = body;
+        }
+
+        /**
+         * Gets the first value of a header, ignoring case
+         */
+        public String header(String name) {
+            for (Map.Entry<String, List<String>> entry : headers.entrySet()) {
+                if (entry.getKey() != null && entry.getKey().equalsIgnoreCase(name) && !entry.getValue().isEmpty()) {
+                    return entry.getValue().get(0);
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Reads the whole body as UTF-8 and closes the stream
+         */
+        public String bodyAsString() throws IOException {
+            try (InputStream in = body) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                byte[] buffer = new byte[8192];
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, read);
+                }
+                return out.toString(StandardCharsets.UTF_8);
+            }
+        }
+
+        /**
+         * Reports the usage of a successful response to whatever charged the request against a
+         * rate limit, so the estimate it was charged is corrected. Does nothing if it was not charged.
+         */
+        public void settle(JSONObject usage) {
+        }
+
+        @Override
+        public void close() throws IOException {
+            body.close();
+        }
+    }
+}
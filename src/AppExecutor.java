@@ -0,0 +1,157 @@
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Central place for background work. Every task runs on its own named virtual thread,
+ * each task type has a bounded number of tasks running at once (the rest wait cheaply),
+ * and delayed actions are scheduled instead of sleeping on a thread.
+ */
+public class AppExecutor {
+
+    /**
+     * Kinds of background work, each with its own in-flight limit so one kind cannot starve another
+     */
+    public enum TaskType {
+        CHAT("chat", 32),
+        GREETING("greeting", 8),
+        DATE_OUTCOME("date-outcome", 8),
+        REQUEST_WRITER("request-writer", 32),
+        AUDIO("audio", 8),
+        IMAGE("image", 4),
+        HEDGE("api-hedge", 16);
+
+        final String threadName;
+        final int maxInFlight;
+
+        TaskType(String threadName, int maxInFlight) {
+            this.threadName = threadName;
+            this.maxInFlight = maxInFlight;
+        }
+    }
+
+    private static final Map<TaskType, Semaphore> permits = new EnumMap<>(TaskType.class);
+    private static final Map<TaskType, AtomicLong> submitted = new EnumMap<>(TaskType.class);
+    private static final AtomicInteger running = new AtomicInteger();
+    private static final AtomicInteger waiting = new AtomicInteger();
+    private static final AtomicLong threadIds = new AtomicLong();
+
+    // One platform thread only hands due tasks over to virtual threads
+    private static final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "app-scheduler");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    static {
+        for (TaskType type : TaskType.values()) {
+            permits.put(type, new Semaphore(type.maxInFlight, true));
+            submitted.put(type, new AtomicLong());
+        }
+    }
+
+    /**
+     * Runs a task in the background
+     */
+    public static CompletableFuture<Void> run(TaskType type, Runnable task) {
+        return supply(type, () -> {
+            task.run();
+            return null;
+        });
+    }
+
+    /**
+     * Runs a task in the background and completes the future with its result
+     */
+    public static <T> CompletableFuture<T> supply(TaskType type, Callable<T> task) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        submitted.get(type).incrementAndGet();
+        waiting.incrementAndGet();
+
+        Thread.ofVirtual().name(type.threadName + "-" + threadIds.incrementAndGet()).start(() -> {
+            Semaphore semaphore = permits.get(type);
+            semaphore.acquireUninterruptibly();
+            waiting.decrementAndGet();
+            running.incrementAndGet();
+            try {
+                future.complete(task.call());
+            } catch (Throwable t) {
+                future.completeExceptionally(t instanceof CompletionException ? t.getCause() : t);
+            } finally {
+                running.decrementAndGet();
+                semaphore.release();
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Gets the original exception out of a failed future
+     */
+    public static Exception unwrap(Throwable t) {
+        while (t instanceof CompletionException && t.getCause() != null) {
+            t = t.getCause();
+        }
+        return t instanceof Exception ? (Exception) t : new Exception(t);
+    }
+
+    /**
+     * Runs a task in the background after a delay
+     */
+    public static ScheduledFuture<?> schedule(TaskType type, Runnable task, long delay, TimeUnit unit) {
+        return scheduler.schedule(() -> run(type, task), delay, unit);
+    }
+
+    /**
+     * Executor view for APIs that take one, such as CompletableFuture.supplyAsync
+     */
+    public static Executor executor(TaskType type) {
+        return task -> run(type, task);
+    }
+
+    /**
+     * Tasks currently running
+     */
+    public static int getRunningCount() {
+        return running.get();
+    }
+
+    /**
+     * Tasks waiting for their type's in-flight limit
+     */
+    public static int getQueuedCount() {
+        return waiting.get();
+    }
+
+    public static long getSubmittedCount(TaskType type) {
+        return submitted.get(type).get();
+    }
+
+    /**
+     * Live platform threads in the whole process - should stay flat however many chats are open
+     */
+    public static int getPlatformThreadCount() {
+        return ManagementFactory.getThreadMXBean().getThreadCount();
+    }
+
+    public static String describe() {
+        StringBuilder stats = new StringBuilder();
+        stats.append(String.format("running=%d queued=%d platformThreads=%d",
+                getRunningCount(), getQueuedCount(), getPlatformThreadCount()));
+        for (TaskType type : TaskType.values()) {
+            stats.append(' ').append(type.threadName).append('=').append(getSubmittedCount(type));
+        }
+        return stats.toString();
+    }
+}
@@ -0,0 +1,149 @@
+import javax.imageio.ImageIO;
+import javax.swing.*;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.InputStream;
+import java.lang.ref.SoftReference;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Loads image resources once per process and shares them between panels.
+ * Entries are held by soft references, so they survive panel restarts but can still be
+ * reclaimed if the heap runs short. Resources that fail to load are remembered too, so each is tried once.
+ * Hits, misses and the decoded footprint are tracked.
+ */
+public class AssetRegistry {
+
+    // Cached in place of a resource that could not be loaded; strongly held, so never reclaimed
+    private static final Object MISSING = new Object();
+
+    private static final Map<String, SoftReference<Object>> assets = new ConcurrentHashMap<>();
+    private static final Map<String, CompletableFuture<BufferedImage>> loading = new ConcurrentHashMap<>();
+    private static final AtomicLong hits = new AtomicLong();
+    private static final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Gets a decoded image resource, or null if it cannot be loaded
+     */
+    public static BufferedImage image(String resourcePath) {
+        Object cached = lookup(resourcePath);
+        if (cached != null) {
+            return cached == MISSING ? null : (BufferedImage) cached;
+        }
+
+        // Callers that miss together share one decode instead of each reading the resource
+        CompletableFuture<BufferedImage> load = new CompletableFuture<>();
+        CompletableFuture<BufferedImage> future = loading.computeIfAbsent(resourcePath, path -> load);
+        if (future == load) {
+            try {
+                load.complete(store(resourcePath, decode(resourcePath)));
+            } catch (Error e) {
+                load.completeExceptionally(e);
+                throw e;
+            } finally {
+                loading.remove(resourcePath, load);
+            }
+        }
+        return future.join();
+    }
+
+    private static BufferedImage decode(String resourcePath) {
+        try (InputStream in = AssetRegistry.class.getResourceAsStream(resourcePath)) {
+            // ImageIO returns null for formats it has no reader for, such as WebP
+            BufferedImage image = in != null ? ImageIO.read(in) : null;
+            if (image == null) {
+                System.err.println("Could not load: " + resourcePath);
+            }
+            return image;
+        } catch (Exception e) {
+            System.err.println("Could not load: " + resourcePath);
+            return null;
+        }
+    }
+
+    /**
+     * Gets several image resources, skipping any that cannot be loaded
+     */
+    public static List<Image> images(String... resourcePaths) {
+        List<Image> images = new ArrayList<>();
+        for (String resourcePath : resourcePaths) {
+            Image image = image(resourcePath);
+            if (image != null) {
+                images.add(image);
+            }
+        }
+        return images;
+    }
+
+    /**
+     * Gets a resource as an icon, which keeps animated GIFs animating
+     */
+    public static ImageIcon icon(String resourcePath) {
+        String key = "icon:" + resourcePath;
+        Object cached = lookup(key);
+        if (cached instanceof ImageIcon) {
+            return (ImageIcon) cached;
+        }
+
+        URL url = AssetRegistry.class.getResource(resourcePath);
+        if (url == null) {
+            System.err.println("Could not load: " + resourcePath);
+            return null;
+        }
+        return store(key, new ImageIcon(url));
+    }
+
+    public static long getHitCount() {
+        return hits.get();
+    }
+
+    public static long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * Estimated bytes of decoded pixels currently held
+     */
+    public static long getFootprintBytes() {
+        long bytes = 0;
+        for (SoftReference<Object> reference : assets.values()) {
+            Object asset = reference.get();
+            if (asset instanceof BufferedImage) {
+                BufferedImage image = (BufferedImage) asset;
+                bytes += (long) image.getWidth() * image.getHeight()
+                        * image.getColorModel().getPixelSize() / 8;
+            } else if (asset instanceof ImageIcon) {
+                ImageIcon icon = (ImageIcon) asset;
+                bytes += 4L * Math.max(0, icon.getIconWidth()) * Math.max(0, icon.getIconHeight());
+            }
+        }
+        return bytes;
+    }
+
+    public static String describe() {
+        return String.format("assets=%d hits=%d misses=%d footprint=%.1f MB",
+                assets.size(), getHitCount(), getMissCount(), getFootprintBytes() / (1024.0 * 1024.0));
+    }
+
+    private static Object lookup(String key) {
+        SoftReference<Object> reference = assets.get(key);
+        Object asset = reference != null ? reference.get() : null;
+        if (asset != null) {
+            hits.incrementAndGet();
+        } else {
+            misses.incrementAndGet();
+        }
+        return asset;
+    }
+
+    private static <T> T store(String key, T asset) {
+        assets.put(key, new SoftReference<>(asset != null ? asset : MISSING));
+        return asset;
+    }
+}
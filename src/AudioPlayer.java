@@ -7,7 +7,13 @@ public class AudioPlayer {
     private static final Random random = new Random();
 
     public static void playSound(String resourcePath) {
-        new Thread(() -> {
+        // Decoded clips are cached and mixed; stream straight from the file until the mixer is open,
+        // if there is no audio line or if the engine could not decode the clip
+        if (SoundEngine.play(resourcePath)) {
+            return;
+        }
+
+        AppExecutor.run(AppExecutor.TaskType.AUDIO, () -> {
             try {
                 InputStream audioSrc = AudioPlayer.class.getResourceAsStream(resourcePath);
                 if (audioSrc == null) {
@@ -23,17 +29,26 @@ public class AudioPlayer {
                 System.err.println("Error playing sound: " + resourcePath);
                 e.printStackTrace();
             }
-        }).start();
+        });
     }
 
-    public static void playRandomDialogue() {
-        String[] dialogueFiles = {
-            "/resources/dialogue/Clash Royale old King Sounds (mp3cut.net).mp3",
-            "/resources/dialogue/Clash Royale old King Sounds (mp3cut.net)-2.mp3",
-            "/resources/dialogue/Clash Royale old King Sounds (mp3cut.net)-3.mp3",
-            "/resources/dialogue/Clash Royale old King Sounds (mp3cut.net)-4.mp3"
-        };
+    private static final String[] dialogueFiles = {
+        "/resources/dialogue/Clash Royale old King Sounds (mp3cut.net).mp3",
+        "/resources/dialogue/Clash Royale old King Sounds (mp3cut.net)-2.mp3",
+        "/resources/dialogue/Clash Royale old King Sounds (mp3cut.net)-3.mp3",
+        "/resources/dialogue/Clash Royale old King Sounds (mp3cut.net)-4.mp3"
+    };
 
+    /**
+     * Decodes the king's dialogue clips in the background
+     */
+    public static void preloadDialogue() {
+        for (String dialogueFile : dialogueFiles) {
+            SoundEngine.preload(dialogueFile);
+        }
+    }
+
+    public static void playRandomDialogue() {
         String randomDialogue = dialogueFiles[random.nextInt(dialogueFiles.length)];
         playSound(randomDialogue);
     }
@@ -43,13 +58,23 @@ public class AudioPlayer {
     }
 
     public static void playDeploySound(String cardName) {
+        playSound(deploySoundPath(cardName));
+    }
+
+    /**
+     * Decodes a card's deploy sound ahead of time so it plays instantly when the card is shown
+     */
+    public static void preloadDeploySound(String cardName) {
+        SoundEngine.preload(deploySoundPath(cardName));
+    }
+
+    private static String deploySoundPath(String cardName) {
         // Convert card name to sound file name
         // e.g., "Baby Dragon" -> "baby_dragon_deploy.mp3"
         String soundFileName = cardName.toLowerCase()
             .replace(" ", "_")
             .replace("-", "_") + "_deploy.mp3";
 
-        String soundPath = "/sounds/" + soundFileName;
-        playSound(soundPath);
+        return "/sounds/" + soundFileName;
     }
 }
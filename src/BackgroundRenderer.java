@@ -0,0 +1,132 @@
+import javax.swing.*;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.VolatileImage;
+
+/**
+ * Caches a panel's static background as one image.
+ * The background is painted once per panel size into a VolatileImage (or a compatible
+ * BufferedImage where accelerated surfaces are unavailable), and every repaint after that is a single copy.
+ * It is painted again only when the panel is resized or the video memory surface is lost.
+ */
+public class BackgroundRenderer {
+
+    /**
+     * Paints the full background at the given size
+     */
+    public interface Painter {
+        void paint(Graphics2D g2d, int width, int height);
+    }
+
+    private final Painter painter;
+    private VolatileImage volatileImage;
+    private BufferedImage fallbackImage;
+    private boolean useFallback = false;
+    private int renderCount = 0;
+
+    public BackgroundRenderer(Painter painter) {
+        this.painter = painter;
+    }
+
+    /**
+     * Draws the cached background onto the component, rendering it first if needed
+     */
+    public void paint(Graphics g, JComponent component) {
+        int width = component.getWidth();
+        int height = component.getHeight();
+        if (width <= 0 || height <= 0) {
+            return;
+        }
+
+        GraphicsConfiguration config = component.getGraphicsConfiguration();
+        if (config == null) {
+            // Not on screen yet - nothing to cache against
+            render((Graphics2D) g, width, height);
+            return;
+        }
+
+        if (!useFallback && paintVolatile(g, config, width, height)) {
+            return;
+        }
+        paintFallback(g, config, width, height);
+    }
+
+    /**
+     * Drops the cached image so the next paint renders it again, for example after the painter's images change
+     */
+    public void invalidate() {
+        if (volatileImage != null) {
+            volatileImage.flush();
+            volatileImage = null;
+        }
+        fallbackImage = null;
+    }
+
+    /**
+     * How many times the background has actually been painted, as opposed to copied
+     */
+    public int getRenderCount() {
+        return renderCount;
+    }
+
+    private boolean paintVolatile(Graphics g, GraphicsConfiguration config, int width, int height) {
+        // Contents can be lost between validating and drawing, so retry until they survive
+        do {
+            if (volatileImage == null || volatileImage.getWidth() != width || volatileImage.getHeight() != height) {
+                if (volatileImage != null) {
+                    volatileImage.flush();
+                }
+                try {
+                    volatileImage = config.createCompatibleVolatileImage(width, height, Transparency.OPAQUE);
+                } catch (Exception e) {
+                    volatileImage = null;
+                }
+                if (volatileImage == null) {
+                    useFallback = true;
+                    return false;
+                }
+                renderVolatile();
+            }
+
+            int status = volatileImage.validate(config);
+            if (status == VolatileImage.IMAGE_INCOMPATIBLE) {
+                volatileImage.flush();
+                volatileImage = null;
+                continue;
+            }
+            if (status == VolatileImage.IMAGE_RESTORED) {
+                renderVolatile();
+            }
+
+            g.drawImage(volatileImage, 0, 0, null);
+        } while (volatileImage == null || volatileImage.contentsLost());
+        return true;
+    }
+
+    private void renderVolatile() {
+        Graphics2D g2d = volatileImage.createGraphics();
+        try {
+            render(g2d, volatileImage.getWidth(), volatileImage.getHeight());
+        } finally {
+            g2d.dispose();
+        }
+    }
+
+    private void paintFallback(Graphics g, GraphicsConfiguration config, int width, int height) {
+        if (fallbackImage == null || fallbackImage.getWidth() != width || fallbackImage.getHeight() != height) {
+            fallbackImage = config.createCompatibleImage(width, height, Transparency.OPAQUE);
+            Graphics2D g2d = fallbackImage.createGraphics();
+            try {
+                render(g2d, width, height);
+            } finally {
+                g2d.dispose();
+            }
+        }
+        g.drawImage(fallbackImage, 0, 0, null);
+    }
+
+    private void render(Graphics2D g2d, int width, int height) {
+        renderCount++;
+        painter.paint(g2d, width, height);
+    }
+}
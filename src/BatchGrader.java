@@ -0,0 +1,259 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Grades stored conversations in bulk through the Message Batches API.
+ * Scoring and evaluation requests are queued, sent as one batch (split only when the API's
+ * per-batch limits require it), polled until processing ends, and the results are streamed
+ * back line by line as they are downloaded.
+ */
+public class BatchGrader {
+
+    private static final String BATCHES_PATH = "/batches";
+
+    // The API accepts up to 100,000 requests or 256 MB per batch
+    private static final int MAX_REQUESTS_PER_BATCH = 100_000;
+    private static final long MAX_BYTES_PER_BATCH = 200L * 1024 * 1024;
+
+    private static final long DEFAULT_POLL_MILLIS = 10_000;
+    private static final long MAX_POLL_MILLIS = 60_000;
+
+    public enum Kind { SCORE, VERDICT }
+
+    /**
+     * The outcome of one grading request
+     */
+    public static class Grade {
+        public final String transcriptId;
+        public final Kind kind;
+        // Index of the graded user message for scores, -1 for verdicts
+        public final int turn;
+        // 0-10 for scores, -1 if unparseable or not a score
+        public final int score;
+        public final boolean romanced;
+        // Null when the request succeeded
+        public final String error;
+
+        Grade(String transcriptId, Kind kind, int turn, int score, boolean romanced, String error) {
+            this.transcriptId = transcriptId;
+            this.kind = kind;
+            this.turn = turn;
+            this.score = score;
+            this.romanced = romanced;
+            this.error = error;
+        }
+
+        public boolean succeeded() {
+            return error == null;
+        }
+
+        @Override
+        public String toString() {
+            String outcome = error != null ? "error: " + error
+                    : kind == Kind.SCORE ? "score " + score : (romanced ? "romanced" : "rejected");
+            return transcriptId + (kind == Kind.SCORE ? " turn " + turn : " verdict") + " - " + outcome;
+        }
+    }
+
+    private static class Entry {
+        final String customId;
+        final String transcriptId;
+        final Kind kind;
+        final int turn;
+        final byte[] params;
+
+        Entry(String customId, String transcriptId, Kind kind, int turn, byte[] params) {
+            this.customId = customId;
+            this.transcriptId = transcriptId;
+            this.kind = kind;
+            this.turn = turn;
+            this.params = params;
+        }
+    }
+
+    private final ApiTransport transport;
+    private final List<Entry> queued = new ArrayList<>();
+    private final Map<String, Entry> submitted = new HashMap<>();
+    // Batches created but not yet read to the end, oldest first
+    private final List<String> pending = new ArrayList<>();
+    private long pollMillis = DEFAULT_POLL_MILLIS;
+    private int nextId = 0;
+
+    public BatchGrader(ApiTransport transport) {
+        this.transport = transport;
+    }
+
+    /**
+     * Sets how long to wait before the first status check; later checks back off up to a minute
+     */
+    public void setPollInterval(long millis) {
+        this.pollMillis = millis;
+    }
+
+    public void addScore(String transcriptId, int turn, JSONObject request) {
+        add(transcriptId, Kind.SCORE, turn, request);
+    }
+
+    public void addVerdict(String transcriptId, JSONObject request) {
+        add(transcriptId, Kind.VERDICT, -1, request);
+    }
+
+    private void add(String transcriptId, Kind kind, int turn, JSONObject request) {
+        // custom_id may only hold letters, digits, '-' and '_', so ids are generated and mapped back
+        String customId = "g" + nextId++;
+        queued.add(new Entry(customId, transcriptId, kind, turn, request.toString().getBytes(StandardCharsets.UTF_8)));
+    }
+
+    public int getQueuedCount() {
+        return queued.size();
+    }
+
+    /**
+     * Gets the batches that were created but whose results have not all been read
+     */
+    public List<String> getPendingBatchIds() {
+        return List.copyOf(pending);
+    }
+
+    /**
+     * Submits everything queued, waits for processing to finish and passes each grade to onGrade
+     * as its result line is read. Blocks until every batch has been read.
+     * If it throws, calling it again picks up where it stopped: batches already created are
+     * read rather than submitted again, and grades already passed on are not repeated.
+     * @return the ids of the batches that were read
+     */
+    public List<String> run(Consumer<Grade> onGrade) throws Exception {
+        while (!queued.isEmpty()) {
+            int end = 0;
+            long bytes = 0;
+            while (end < queued.size() && end < MAX_REQUESTS_PER_BATCH
+                    && (end == 0 || bytes + queued.get(end).params.length < MAX_BYTES_PER_BATCH)) {
+                bytes += queued.get(end).params.length;
+                end++;
+            }
+            List<Entry> entries = queued.subList(0, end);
+            String batchId = submit(entries);
+            // Recorded straight away, so a later failure neither orphans this batch nor submits it again
+            for (Entry entry : entries) {
+                submitted.put(entry.customId, entry);
+            }
+            entries.clear();
+            pending.add(batchId);
+        }
+
+        List<String> batchIds = new ArrayList<>();
+        while (!pending.isEmpty()) {
+            String batchId = pending.get(0);
+            streamResults(awaitResultsUrl(batchId), onGrade);
+            pending.remove(0);
+            batchIds.add(batchId);
+        }
+        return batchIds;
+    }
+
+    /**
+     * Creates a batch, writing each request's params straight from its stored bytes
+     */
+    private String submit(List<Entry> entries) throws Exception {
+        ApiTransport.RequestBody body = out -> {
+            write(out, "{\"requests\":[");
+            for (int i = 0; i < entries.size(); i++) {
+                Entry entry = entries.get(i);
+                write(out, (i > 0 ? "," : "") + "{\"custom_id\":\"" + entry.customId + "\",\"params\":");
+                out.write(entry.params);
+                write(out, "}");
+            }
+            write(out, "]}");
+        };
+
+        try (ApiTransport.ApiResponse response = transport.send("POST", BATCHES_PATH, body)) {
+            String responseText = response.bodyAsString();
+            if (response.statusCode != 200) {
+                throw new Exception("API Error (Code " + response.statusCode + "): " + responseText);
+            }
+            String batchId = new JSONObject(responseText).getString("id");
+            System.out.println("Submitted grading batch " + batchId + " with " + entries.size() + " requests");
+            return batchId;
+        }
+    }
+
+    /**
+     * Polls the batch until processing has ended
+     */
+    private String awaitResultsUrl(String batchId) throws Exception {
+        long delay = pollMillis;
+        while (true) {
+            try (ApiTransport.ApiResponse response = transport.send("GET", BATCHES_PATH + "/" + batchId, null)) {
+                String responseText = response.bodyAsString();
+                if (response.statusCode != 200) {
+                    throw new Exception("API Error (Code " + response.statusCode + "): " + responseText);
+                }
+                JSONObject batch = new JSONObject(responseText);
+                if ("ended".equals(batch.optString("processing_status"))) {
+                    return batch.getString("results_url");
+                }
+            }
+            Thread.sleep(delay);
+            delay = Math.min(MAX_POLL_MILLIS, delay * 3 / 2);
+        }
+    }
+
+    /**
+     * Reads the JSONL results one line at a time, so memory use does not grow with the batch
+     */
+    private void streamResults(String resultsUrl, Consumer<Grade> onGrade) throws Exception {
+        try (ApiTransport.ApiResponse response = transport.send("GET", resultsUrl, null)) {
+            if (response.statusCode != 200) {
+                throw new Exception("API Error (Code " + response.statusCode + "): " + response.bodyAsString());
+            }
+            BufferedReader in = new BufferedReader(new InputStreamReader(response.body, StandardCharsets.UTF_8));
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                JSONObject result = new JSONObject(line);
+                Entry entry = submitted.remove(result.getString("custom_id"));
+                if (entry != null) {
+                    onGrade.accept(toGrade(entry, result.getJSONObject("result")));
+                }
+            }
+        }
+    }
+
+    private static Grade toGrade(Entry entry, JSONObject result) {
+        String type = result.getString("type");
+        if (!type.equals("succeeded")) {
+            // errored results carry the API error; canceled and expired ones have nothing more to say
+            JSONObject error = result.optJSONObject("error");
+            return new Grade(entry.transcriptId, entry.kind, entry.turn, -1, false,
+                    error != null ? error.toString() : type);
+        }
+
+        JSONObject message = result.getJSONObject("message");
+        TokenUsageStats.record(message.optJSONObject("usage"));
+        JSONArray content = message.getJSONArray("content");
+        String text = content.length() > 0 ? content.getJSONObject(0).optString("text") : "";
+
+        if (entry.kind == Kind.SCORE) {
+            return new Grade(entry.transcriptId, entry.kind, entry.turn,
+                    CharacterConversationSimulator.parseScore(text), false, null);
+        }
+        return new Grade(entry.transcriptId, entry.kind, entry.turn, -1,
+                CharacterConversationSimulator.parseVerdict(text), null);
+    }
+
+    private static void write(OutputStream out, String text) throws IOException {
+        out.write(text.getBytes(StandardCharsets.UTF_8));
+    }
+}
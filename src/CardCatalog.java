@@ -0,0 +1,187 @@
+import org.json.JSONObject;
+import org.json.JSONTokener;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+/**
+ * All Clash Royale cards, parsed from clash_royale_cards_updated.json once per process.
+ * The catalog and its cards are immutable, so every SwipePanel (including after a restart)
+ * shares the same instance and pays nothing to load it again.
+ */
+public class CardCatalog {
+
+    private static final String CARDS_FILE = "clash_royale_cards_updated.json";
+    private static final String[] POSSIBLE_PATHS = {
+        CARDS_FILE,                 // When running from src directory
+        "src/" + CARDS_FILE,        // When running from root
+        "../" + CARDS_FILE
+    };
+
+    private final List<ClashCard> cards;
+    private final Map<String, ClashCard> byName;
+    private final Map<String, List<ClashCard>> byCategory;
+    private final Map<String, List<ClashCard>> byPersonality;
+    // Search indexes over subsets of the cards, built on first use and shared by every session
+    private final Map<String, CardIndex> indexes = new ConcurrentHashMap<>();
+
+    // Loaded on first use by the holder class
+    private static class Holder {
+        static final CardCatalog INSTANCE = load();
+    }
+
+    private CardCatalog(List<ClashCard> cards) {
+        Map<String, ClashCard> names = new LinkedHashMap<>();
+        Map<String, List<ClashCard>> categories = new LinkedHashMap<>();
+        Map<String, List<ClashCard>> personalities = new LinkedHashMap<>();
+
+        for (ClashCard card : cards) {
+            names.put(card.name, card);
+            categories.computeIfAbsent(card.category, key -> new ArrayList<>()).add(card);
+            personalities.computeIfAbsent(card.personality, key -> new ArrayList<>()).add(card);
+        }
+
+        this.cards = List.copyOf(cards);
+        this.byName = Collections.unmodifiableMap(names);
+        this.byCategory = freeze(categories);
+        this.byPersonality = freeze(personalities);
+    }
+
+    /**
+     * Gets the shared catalog, loading it on first call
+     */
+    public static CardCatalog get() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * All cards in file order
+     */
+    public List<ClashCard> all() {
+        return cards;
+    }
+
+    /**
+     * Gets a card by its exact name, or null if there is none
+     */
+    public ClashCard byName(String name) {
+        return byName.get(name);
+    }
+
+    public List<ClashCard> byCategory(String category) {
+        return byCategory.getOrDefault(category, List.of());
+    }
+
+    public List<ClashCard> byPersonality(String personality) {
+        return byPersonality.getOrDefault(personality, List.of());
+    }
+
+    public int size() {
+        return cards.size();
+    }
+
+    /**
+     * Gets the shared search index over the cards matching filter, building it on first call.
+     * The name identifies the pool, so every call with the same name must pass the same filter.
+     */
+    public CardIndex index(String name, Predicate<ClashCard> filter) {
+        return indexes.computeIfAbsent(name, key -> {
+            List<ClashCard> pool = new ArrayList<>();
+            for (ClashCard card : cards) {
+                if (filter.test(card)) {
+                    pool.add(card);
+                }
+            }
+            return new CardIndex(pool);
+        });
+    }
+
+    private static CardCatalog load() {
+        long start = System.nanoTime();
+        List<ClashCard> cards = new ArrayList<>();
+
+        try (InputStream in = openCardsFile()) {
+            if (in == null) {
+                System.err.println("Could not find " + CARDS_FILE);
+            } else {
+                readCards(new InputStreamReader(in, StandardCharsets.UTF_8), cards);
+            }
+        } catch (Exception e) {
+            System.err.println("Error loading cards from JSON: " + e.getMessage());
+            e.printStackTrace();
+        }
+
+        System.out.printf("Loaded %d cards in %.1f ms%n", cards.size(), (System.nanoTime() - start) / 1_000_000.0);
+        return new CardCatalog(cards);
+    }
+
+    private static InputStream openCardsFile() throws IOException {
+        for (String path : POSSIBLE_PATHS) {
+            File jsonFile = new File(path);
+            if (jsonFile.exists()) {
+                System.out.println("Loaded JSON from: " + path);
+                return new FileInputStream(jsonFile);
+            }
+        }
+        // Packaged builds carry the file on the classpath
+        return CardCatalog.class.getResourceAsStream("/" + CARDS_FILE);
+    }
+
+    /**
+     * Reads the top-level array one card object at a time, so the file is never held as one string
+     */
+    private static void readCards(Reader reader, List<ClashCard> cards) {
+        JSONTokener tokener = new JSONTokener(reader);
+        if (tokener.nextClean() != '[') {
+            throw tokener.syntaxError("Expected an array of cards");
+        }
+        if (tokener.nextClean() == ']') {
+            return;
+        }
+        tokener.back();
+
+        while (true) {
+            cards.add(toCard(new JSONObject(tokener)));
+
+            char separator = tokener.nextClean();
+            if (separator == ']') {
+                return;
+            }
+            if (separator != ',') {
+                throw tokener.syntaxError("Expected ',' or ']' between cards");
+            }
+        }
+    }
+
+    private static ClashCard toCard(JSONObject json) {
+        return new ClashCard(
+            json.optString("card_name", ""),
+            json.optString("image", ""),
+            json.optString("height", ""),
+            json.optString("attack_range", ""),
+            json.optDouble("free_time", 0.0),
+            json.optDouble("humanoid_score", 0.0),
+            json.optString("category", ""),
+            json.optString("personality", ""));
+    }
+
+    private static Map<String, List<ClashCard>> freeze(Map<String, List<ClashCard>> index) {
+        Map<String, List<ClashCard>> frozen = new LinkedHashMap<>();
+        for (Map.Entry<String, List<ClashCard>> entry : index.entrySet()) {
+            frozen.put(entry.getKey(), List.copyOf(entry.getValue()));
+        }
+        return Collections.unmodifiableMap(frozen);
+    }
+}
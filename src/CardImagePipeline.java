@@ -0,0 +1,187 @@
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.InputStream;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Loads card images off the EDT.
+ * Each image is found, decoded and scaled to its display size in the background, and the result
+ * is kept so the EDT only ever draws a finished image. Upcoming cards can be prefetched.
+ * Scaled images are also saved in ThumbnailCache so later runs skip the full-size decode.
+ */
+public class CardImagePipeline {
+
+    private static final int MAX_CACHED_IMAGES = 24;
+
+    private static final Map<String, CompletableFuture<BufferedImage>> cache = new LinkedHashMap<>(32, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CompletableFuture<BufferedImage>> eldest) {
+            return size() > MAX_CACHED_IMAGES;
+        }
+    };
+
+    /**
+     * Gets a card's image scaled to fit in a maxSize square, loading it in the background if needed.
+     * The future completes with null if the image cannot be loaded.
+     */
+    public static CompletableFuture<BufferedImage> load(ClashCard card, int maxSize) {
+        return load(card, maxSize, maxSize, true);
+    }
+
+    /**
+     * Gets a card's image stretched to exactly width x height
+     */
+    public static CompletableFuture<BufferedImage> loadExact(ClashCard card, int width, int height) {
+        return load(card, width, height, false);
+    }
+
+    /**
+     * Gets a card's image only if it is already loaded, so the EDT never waits
+     */
+    public static BufferedImage getIfReady(ClashCard card, int maxSize) {
+        CompletableFuture<BufferedImage> future = load(card, maxSize);
+        return future.isDone() && !future.isCompletedExceptionally() ? future.join() : null;
+    }
+
+    /**
+     * Starts loading the images for the cards that will be shown next
+     */
+    public static void prefetch(List<ClashCard> upcoming, int maxSize) {
+        for (ClashCard card : upcoming) {
+            load(card, maxSize);
+        }
+    }
+
+    private static CompletableFuture<BufferedImage> load(ClashCard card, int width, int height, boolean fit) {
+        String variant = fit ? "fit" + width : width + "x" + height;
+        String key = card.image + "@" + variant;
+        synchronized (cache) {
+            CompletableFuture<BufferedImage> cached = cache.get(key);
+            if (cached != null) {
+                return cached;
+            }
+            CompletableFuture<BufferedImage> future = AppExecutor.supply(AppExecutor.TaskType.IMAGE,
+                () -> decodeAndScale(card, width, height, fit, variant));
+            cache.put(key, future);
+            return future;
+        }
+    }
+
+    private static BufferedImage decodeAndScale(ClashCard card, int boxWidth, int boxHeight, boolean fit, String variant) {
+        try {
+            String cleanImagePath = cleanImagePath(card.image);
+            File sourceFile = findFile(cleanImagePath);
+
+            // A thumbnail from an earlier run means the full-size image never needs decoding
+            if (sourceFile != null) {
+                BufferedImage thumbnail = ThumbnailCache.get(sourceFile, variant);
+                if (thumbnail != null) {
+                    return thumbnail;
+                }
+            }
+
+            BufferedImage image = read(sourceFile, cleanImagePath);
+            if (image == null) {
+                System.err.println("Warning: Could not load image for " + card.name + ": " + card.image);
+                return null;
+            }
+
+            int width = boxWidth;
+            int height = boxHeight;
+            if (fit) {
+                // Scale image while maintaining aspect ratio
+                double scale = Math.min((double) boxWidth / image.getWidth(), (double) boxHeight / image.getHeight());
+                width = Math.max(1, (int) (image.getWidth() * scale));
+                height = Math.max(1, (int) (image.getHeight() * scale));
+            }
+
+            BufferedImage scaled = scale(image, width, height);
+            if (sourceFile != null) {
+                ThumbnailCache.put(sourceFile, variant, scaled);
+            }
+            return scaled;
+        } catch (Exception e) {
+            System.err.println("ERROR loading image for " + card.name + ": " + e.getMessage());
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    private static File findFile(String cleanImagePath) {
+        String[] possiblePaths = {
+            "images/" + cleanImagePath,                // When running from src directory
+            "src/images/" + cleanImagePath,            // When running from root
+            "../images/" + cleanImagePath
+        };
+
+        for (String path : possiblePaths) {
+            File imageFile = new File(path);
+            if (imageFile.exists()) {
+                return imageFile;
+            }
+        }
+        return null;
+    }
+
+    private static BufferedImage read(File sourceFile, String cleanImagePath) throws Exception {
+        if (sourceFile != null) {
+            BufferedImage image = ImageIO.read(sourceFile);
+            if (image != null) {
+                return image;
+            }
+        }
+
+        // Try loading as resource
+        try (InputStream in = CardImagePipeline.class.getResourceAsStream("/images/" + cleanImagePath)) {
+            return in != null ? ImageIO.read(in) : null;
+        }
+    }
+
+    /**
+     * Scales down in halving steps so bilinear filtering keeps the quality of SCALE_SMOOTH
+     */
+    private static BufferedImage scale(BufferedImage source, int targetWidth, int targetHeight) {
+        BufferedImage current = source;
+        int width = source.getWidth();
+        int height = source.getHeight();
+
+        do {
+            width = Math.max(targetWidth, width / 2);
+            height = Math.max(targetHeight, height / 2);
+
+            BufferedImage step = createImage(width, height);
+            Graphics2D g2d = step.createGraphics();
+            g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g2d.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g2d.drawImage(current, 0, 0, width, height, null);
+            g2d.dispose();
+            current = step;
+        } while (width != targetWidth || height != targetHeight);
+
+        return current;
+    }
+
+    /**
+     * Premultiplied ARGB draws as a plain blend and is the layout ThumbnailCache stores
+     */
+    private static BufferedImage createImage(int width, int height) {
+        return new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB_PRE);
+    }
+
+    private static String cleanImagePath(String imagePath) {
+        // Remove leading ./ if present
+        if (imagePath.startsWith("./")) {
+            imagePath = imagePath.substring(2);
+        }
+        // Remove leading images/ if present
+        if (imagePath.startsWith("images/")) {
+            imagePath = imagePath.substring(7);
+        }
+        return imagePath;
+    }
+}
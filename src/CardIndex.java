@@ -0,0 +1,278 @@
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * A k-d tree over a list of cards' four scoring dimensions, answering
+ * "the k most compatible cards not yet excluded" without scoring every card.
+ * It is built once per card pool (see CardCatalog.index) and shared by every session.
+ * Each component score only falls as a card moves away from the preference, so the best score
+ * anywhere in a node's bounding box is known in advance; nodes are visited best bound first and
+ * the search stops once no unvisited node can beat the k-th best card found.
+ */
+public class CardIndex {
+
+    private static final int DIMENSIONS = 4;
+    private static final int LEAF_SIZE = 16;
+    private static final float[] PENALTIES = {
+        CompatibilityScorer.HEIGHT_PENALTY,
+        CompatibilityScorer.RANGE_PENALTY,
+        CompatibilityScorer.FREE_TIME_PENALTY,
+        CompatibilityScorer.HUMANNESS_PENALTY
+    };
+
+    private final List<ClashCard> cards;
+    private final float[][] coordinates;
+    private final int[] points;
+    private final int[] leafOf;
+
+    // Nodes are stored in parallel arrays; leaves have left == -1 and own points[start, end)
+    private final List<float[]> lower = new ArrayList<>();
+    private final List<float[]> upper = new ArrayList<>();
+    private final List<int[]> links = new ArrayList<>(); // {left, right, parent, start, end}
+
+    /**
+     * Tracks which cards have been excluded, plus how many remain under each node so
+     * fully excluded subtrees are skipped. One per browsing session, while the index is shared.
+     */
+    public class Exclusions {
+        private final BitSet excluded = new BitSet(points.length);
+        private final int[] remaining = new int[links.size()];
+
+        private Exclusions() {
+            for (int node = 0; node < remaining.length; node++) {
+                int[] link = links.get(node);
+                remaining[node] = link[4] - link[3];
+            }
+        }
+
+        public void exclude(int index) {
+            if (excluded.get(index)) {
+                return;
+            }
+            excluded.set(index);
+            for (int node = leafOf[index]; node >= 0; node = links.get(node)[2]) {
+                remaining[node]--;
+            }
+        }
+
+        public boolean isExcluded(int index) {
+            return excluded.get(index);
+        }
+
+        public int remaining() {
+            return remaining.length > 0 ? remaining[0] : 0;
+        }
+    }
+
+    public CardIndex(List<ClashCard> cards) {
+        this(List.copyOf(cards), new CardTable(cards));
+    }
+
+    CardIndex(List<ClashCard> cards, CardTable table) {
+        this.cards = cards;
+        int size = table.size;
+        coordinates = new float[DIMENSIONS][size];
+        for (int i = 0; i < size; i++) {
+            coordinates[0][i] = table.heightInches[i];
+            coordinates[1][i] = table.rangeLevel[i];
+            coordinates[2][i] = table.freeTimePercent[i];
+            coordinates[3][i] = table.humannessPercent[i];
+        }
+
+        points = new int[size];
+        for (int i = 0; i < size; i++) {
+            points[i] = i;
+        }
+        leafOf = new int[size];
+        if (size > 0) {
+            build(0, size, -1);
+        }
+    }
+
+    public Exclusions newExclusions() {
+        return new Exclusions();
+    }
+
+    public ClashCard card(int index) {
+        return cards.get(index);
+    }
+
+    public int size() {
+        return points.length;
+    }
+
+    /**
+     * Finds up to k of the best cards that are not excluded, best first.
+     * Ties go to the card earlier in the table, matching a stable sort.
+     */
+    public int[] nearest(CardRanker.Preferences preferences, int k, Exclusions exclusions) {
+        if (k <= 0 || exclusions.remaining() == 0) {
+            return new int[0];
+        }
+        float[] target = {preferences.heightInches, preferences.attackRange, preferences.freeTime, preferences.humanness};
+
+        // Worst of the current best k on top, so it can be replaced
+        PriorityQueue<Scored> best = new PriorityQueue<>(k + 1, (a, b) -> -compare(a, b));
+        // Most promising node on top
+        PriorityQueue<Scored> frontier = new PriorityQueue<>((a, b) -> Float.compare(b.score, a.score));
+        frontier.add(new Scored(0, bound(0, target)));
+
+        while (!frontier.isEmpty()) {
+            Scored entry = frontier.poll();
+            // An equal bound can still hold an equal score with an earlier index, so only prune below
+            if (best.size() == k && entry.score < best.peek().score) {
+                break;
+            }
+
+            int node = entry.id;
+            int[] link = links.get(node);
+            if (link[0] < 0) {
+                for (int p = link[3]; p < link[4]; p++) {
+                    int index = points[p];
+                    if (exclusions.isExcluded(index)) {
+                        continue;
+                    }
+                    Scored candidate = new Scored(index, score(index, target));
+                    if (best.size() < k) {
+                        best.add(candidate);
+                    } else if (compare(candidate, best.peek()) < 0) {
+                        best.poll();
+                        best.add(candidate);
+                    }
+                }
+            } else {
+                for (int child = 0; child < 2; child++) {
+                    int childNode = link[child];
+                    if (exclusions.remaining[childNode] > 0) {
+                        frontier.add(new Scored(childNode, bound(childNode, target)));
+                    }
+                }
+            }
+        }
+
+        int[] result = new int[best.size()];
+        for (int i = result.length - 1; i >= 0; i--) {
+            result[i] = best.poll().id;
+        }
+        return result;
+    }
+
+    /**
+     * A card or node with its score or bound
+     */
+    private static class Scored {
+        final int id;
+        final float score;
+
+        Scored(int id, float score) {
+            this.id = id;
+            this.score = score;
+        }
+    }
+
+    /**
+     * Orders better candidates first: higher score, then lower index
+     */
+    private static int compare(Scored a, Scored b) {
+        int byScore = Float.compare(b.score, a.score);
+        return byScore != 0 ? byScore : Integer.compare(a.id, b.id);
+    }
+
+    /**
+     * Same arithmetic as CompatibilityScorer so results agree with the ranker's totals exactly
+     */
+    private float score(int index, float[] target) {
+        return CompatibilityScorer.score(coordinates[0][index], target[0], PENALTIES[0])
+                + CompatibilityScorer.score(coordinates[1][index], target[1], PENALTIES[1])
+                + CompatibilityScorer.score(coordinates[2][index], target[2], PENALTIES[2])
+                + CompatibilityScorer.score(coordinates[3][index], target[3], PENALTIES[3]);
+    }
+
+    /**
+     * The highest score any card inside the node's bounding box could have
+     */
+    private float bound(int node, float[] target) {
+        float[] lo = lower.get(node);
+        float[] hi = upper.get(node);
+        float total = 0;
+        for (int d = 0; d < DIMENSIONS; d++) {
+            float nearest = Math.max(lo[d], Math.min(hi[d], target[d]));
+            total += CompatibilityScorer.score(nearest, target[d], PENALTIES[d]);
+        }
+        return total;
+    }
+
+    private int build(int start, int end, int parent) {
+        int node = links.size();
+        float[] lo = new float[DIMENSIONS];
+        float[] hi = new float[DIMENSIONS];
+        for (int d = 0; d < DIMENSIONS; d++) {
+            lo[d] = Float.POSITIVE_INFINITY;
+            hi[d] = Float.NEGATIVE_INFINITY;
+            for (int p = start; p < end; p++) {
+                float value = coordinates[d][points[p]];
+                lo[d] = Math.min(lo[d], value);
+                hi[d] = Math.max(hi[d], value);
+            }
+        }
+        lower.add(lo);
+        upper.add(hi);
+        int[] link = {-1, -1, parent, start, end};
+        links.add(link);
+
+        if (end - start <= LEAF_SIZE) {
+            for (int p = start; p < end; p++) {
+                leafOf[points[p]] = node;
+            }
+            return node;
+        }
+
+        // Split the dimension whose spread costs the most score
+        int splitDimension = 0;
+        float widest = -1;
+        for (int d = 0; d < DIMENSIONS; d++) {
+            float spread = (hi[d] - lo[d]) * PENALTIES[d];
+            if (spread > widest) {
+                widest = spread;
+                splitDimension = d;
+            }
+        }
+
+        int middle = (start + end) >>> 1;
+        select(start, end - 1, middle, coordinates[splitDimension]);
+        link[0] = build(start, middle, node);
+        link[1] = build(middle, end, node);
+        return node;
+    }
+
+    /**
+     * Partially sorts points[left..right] so position k holds the median along one dimension
+     */
+    private void select(int left, int right, int k, float[] values) {
+        while (left < right) {
+            float pivot = values[points[(left + right) >>> 1]];
+            int i = left;
+            int j = right;
+            while (i <= j) {
+                while (values[points[i]] < pivot) i++;
+                while (values[points[j]] > pivot) j--;
+                if (i <= j) {
+                    int swap = points[i];
+                    points[i] = points[j];
+                    points[j] = swap;
+                    i++;
+                    j--;
+                }
+            }
+            if (k <= j) {
+                right = j;
+            } else if (k >= i) {
+                left = i;
+            } else {
+                return;
+            }
+        }
+    }
+}
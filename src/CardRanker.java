@@ -0,0 +1,127 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Hands out cards best match first without sorting or scoring the whole candidate list.
+ * The best K unseen cards are found with a search of the shared CardIndex, which only scores the
+ * cards near the preferences, and the next batch is only selected once those have all been shown.
+ * All a session owns is the set of cards it has shown, so starting one costs next to nothing.
+ */
+public class CardRanker {
+
+    private static final int DEFAULT_BATCH_SIZE = 8;
+
+    /**
+     * What the user is looking for, in the units the profile screen collects
+     */
+    public static class Preferences {
+        final int heightInches;
+        final int attackRange;
+        final int freeTime;
+        final int humanness;
+
+        public Preferences(int heightFeet, int heightInches, String attackRange, int freeTime, int humanness) {
+            this.heightInches = (heightFeet * 12) + heightInches;
+            this.attackRange = attackRangeToValue(attackRange);
+            this.freeTime = freeTime;
+            this.humanness = humanness;
+        }
+    }
+
+    private final CardIndex index;
+    private final int batchSize;
+    private final Preferences preferences;
+
+    private final CardIndex.Exclusions shown;
+    private final List<Integer> batch = new ArrayList<>();
+    private int batchPosition = 0;
+
+    /**
+     * @param index the shared index over the candidate cards, from CardCatalog.index
+     */
+    public CardRanker(CardIndex index, Preferences preferences) {
+        this(index, preferences, DEFAULT_BATCH_SIZE);
+    }
+
+    public CardRanker(CardIndex index, Preferences preferences, int batchSize) {
+        this.index = index;
+        this.preferences = preferences;
+        this.batchSize = Math.max(1, batchSize);
+        this.shown = index.newExclusions();
+    }
+
+    /**
+     * Gets the best card not shown yet and marks it shown, or null when every card has been shown
+     */
+    public ClashCard next() {
+        if (batchPosition >= batch.size()) {
+            fillBatch();
+            if (batch.isEmpty()) {
+                return null;
+            }
+        }
+        int best = batch.get(batchPosition++);
+        shown.exclude(best);
+        return index.card(best);
+    }
+
+    /**
+     * Gets up to count of the best cards not shown yet, without marking them shown
+     */
+    public List<ClashCard> peek(int count) {
+        List<ClashCard> upcoming = new ArrayList<>();
+        for (int i = batchPosition; i < batch.size() && upcoming.size() < count; i++) {
+            upcoming.add(index.card(batch.get(i)));
+        }
+        if (upcoming.size() < count) {
+            // The rest of the batch is the best of what is unseen, so look past it by asking for more
+            int pending = batch.size() - batchPosition;
+            int[] best = index.nearest(preferences, pending + count - upcoming.size(), shown);
+            for (int i = pending; i < best.length; i++) {
+                upcoming.add(index.card(best[i]));
+            }
+        }
+        return upcoming;
+    }
+
+    /**
+     * Gets a card's compatibility score with the current preferences
+     */
+    public double score(ClashCard card) {
+        return CompatibilityScorer.score((card.heightFeet * 12) + card.heightInches, preferences.heightInches,
+                        CompatibilityScorer.HEIGHT_PENALTY)
+                + CompatibilityScorer.score(attackRangeToValue(card.attackRange), preferences.attackRange,
+                        CompatibilityScorer.RANGE_PENALTY)
+                + CompatibilityScorer.score((float) (card.freeTime * 100), preferences.freeTime,
+                        CompatibilityScorer.FREE_TIME_PENALTY)
+                + CompatibilityScorer.score((float) (card.humanoidScore * 100), preferences.humanness,
+                        CompatibilityScorer.HUMANNESS_PENALTY);
+    }
+
+    public int size() {
+        return index.size();
+    }
+
+    public int remaining() {
+        return shown.remaining();
+    }
+
+    private void fillBatch() {
+        batch.clear();
+        for (int best : index.nearest(preferences, batchSize, shown)) {
+            batch.add(best);
+        }
+        batchPosition = 0;
+    }
+
+    static int attackRangeToValue(String range) {
+        switch (range.toLowerCase()) {
+            case "short": return 1;
+            case "medium": return 2;
+            case "long": return 3;
+            case "extra long":
+            case "x-long": return 4;
+            default: return 2; // Default to medium
+        }
+    }
+}
@@ -0,0 +1,43 @@
+import java.util.List;
+
+/**
+ * The scoring inputs of a list of cards stored column by column.
+ * Everything the compatibility score needs is converted once when the table is built - height to
+ * inches, attack range to a level, free time and humanness to percentages - so scoring is a
+ * tight loop over primitive arrays with no per-card parsing or object access.
+ */
+public class CardTable {
+    final int size;
+    final int[] heightInches;
+    final int[] rangeLevel;
+    final float[] freeTimePercent;
+    final float[] humannessPercent;
+
+    public CardTable(List<ClashCard> cards) {
+        size = cards.size();
+        heightInches = new int[size];
+        rangeLevel = new int[size];
+        freeTimePercent = new float[size];
+        humannessPercent = new float[size];
+
+        for (int i = 0; i < size; i++) {
+            ClashCard card = cards.get(i);
+            heightInches[i] = (card.heightFeet * 12) + card.heightInches;
+            rangeLevel[i] = CardRanker.attackRangeToValue(card.attackRange);
+            freeTimePercent[i] = (float) (card.freeTime * 100);
+            humannessPercent[i] = (float) (card.humanoidScore * 100);
+        }
+    }
+
+    CardTable(int[] heightInches, int[] rangeLevel, float[] freeTimePercent, float[] humannessPercent) {
+        this.size = heightInches.length;
+        this.heightInches = heightInches;
+        this.rangeLevel = rangeLevel;
+        this.freeTimePercent = freeTimePercent;
+        this.humannessPercent = humannessPercent;
+    }
+
+    public int size() {
+        return size;
+    }
+}
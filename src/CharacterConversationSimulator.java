@@ -1,34 +1,162 @@
 import java.io.BufferedReader;
 import java.io.InputStreamReader;
-import java.io.OutputStream;
-import java.net.HttpURLConnection;
-import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import org.json.JSONArray;
+import org.json.JSONException;
 import org.json.JSONObject;
-import java.util.ArrayList;
 import java.util.List;
-import java.io.File;
-import java.io.FileInputStream;
-import java.util.Base64;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
 
 
 public class CharacterConversationSimulator {
 
-    private static final String API_URL = "https://api.anthropic.com/v1/messages";
-    private static final String ANTHROPIC_VERSION = "2023-06-01";
+    // Shared by every simulator so connections stay open between turns and sessions
+    private static volatile ApiTransport transport = ResilientTransport.shared();
+
+    // Rough UTF-8 bytes per token, for charging the rate limiter before the real count is known
+    private static final int BYTES_PER_TOKEN = 4;
+    // Roughly what a photo downscaled by PhotoPreprocessor costs
+    private static final int IMAGE_TOKENS = 1600;
+
+    private static final int REPLY_MAX_TOKENS = 500;
+    private static final int FUSED_MAX_TOKENS = 600;
+
+    /**
+     * How a request is sent: its rate limiter priority and whether it may be hedged
+     */
+    private enum CallKind {
+        REPLY(RateLimiter.Priority.INTERACTIVE, false),
+        GREETING(RateLimiter.Priority.INTERACTIVE, true),
+        GRADING(RateLimiter.Priority.BACKGROUND, false),
+        SUMMARY(RateLimiter.Priority.BACKGROUND, false);
+
+        final RateLimiter.Priority priority;
+        final boolean hedged;
+
+        CallKind(RateLimiter.Priority priority, boolean hedged) {
+            this.priority = priority;
+            this.hedged = hedged;
+        }
+    }
+
+    // Runs replies, scoring and evaluation off the caller's thread
+    private static final Executor API_EXECUTOR = AppExecutor.executor(AppExecutor.TaskType.CHAT);
 
     private String characterPersonality;
     private String userBio;
-    private List<JSONObject> conversationHistory;
+    private final ConversationHistory history;
     private UserProfile userP = new UserProfile();
-    private int characterMessageCount = 0;
-    private boolean dateFailed = false;
+    private volatile int characterMessageCount = 0;
+    private volatile boolean dateFailed = false;
+    private boolean fusedMode = false;
+
+    // The serialized fields before the messages of the last reply request, reused until the memo
+    // or request type changes. Guarded by history's lock.
+    private byte[] replyHead;
+    private String replyHeadMemo;
+    private boolean replyHeadStream;
+    private String replyHeadFormat;
+
+    // Static system prompt prefixes. These never contain per-session text, so they are byte-identical
+    // across sessions and can be served from the prompt cache; the persona and bio follow as a separate block.
+    private static final String REPLY_INSTRUCTIONS =
+            "CRITICAL INSTRUCTIONS:\n" +
+            "- Talk EXACTLY like your character would in Clash Royale - use their speech patterns, mannerisms, and vocabulary\n" +
+            "- Make HEAVY references to the Clash Royale universe (Arena, Elixir, King's Tower, battles, clans, etc.)\n" +
+            "- Be authentic and natural - NOT generic or AI-like\n" +
+            "- Show your character's unique personality strongly - be quirky, funny, dramatic, or whatever fits them\n" +
+            "- Use slang, exclamations, and emotions that match your character\n" +
+            "- Reference specific Clash Royale gameplay mechanics and lore\n" +
+            "- Keep responses 2-3 sentences max\n" +
+            "- DO NOT sound corporate, formal, or generic - be REAL and IN-CHARACTER";
+
+    private static final String PHOTO_GREETING_INSTRUCTIONS =
+            "You just saw your match's profile picture. Comment on their appearance, demeanor, and what you notice in the background.\n\n" +
+            "CRITICAL INSTRUCTIONS:\n" +
+            "- Talk EXACTLY like your character would in Clash Royale - use their speech patterns, mannerisms, and vocabulary\n" +
+            "- Make HEAVY references to the Clash Royale universe (Arena, Elixir, King's Tower, battles, clans, etc.)\n" +
+            "- Be authentic and natural - NOT generic or AI-like\n" +
+            "- Show your character's unique personality strongly - be quirky, funny, dramatic, or whatever fits them\n" +
+            "- Use slang, exclamations, and emotions that match your character\n" +
+            "- Be charming and flirty in YOUR character's style\n" +
+            "- Keep it brief (2-3 sentences)\n" +
+            "- DO NOT sound corporate, formal, or generic - be REAL and IN-CHARACTER";
+
+    private static final String GREETING_INSTRUCTIONS =
+            "Start the conversation with a brief, charming greeting (2-3 sentences).\n\n" +
+            "CRITICAL INSTRUCTIONS:\n" +
+            "- Talk EXACTLY like your character would in Clash Royale - use their speech patterns, mannerisms, and vocabulary\n" +
+            "- Make HEAVY references to the Clash Royale universe (Arena, Elixir, King's Tower, battles, clans, etc.)\n" +
+            "- Be authentic and natural - NOT generic or AI-like\n" +
+            "- Show your character's unique personality strongly - be quirky, funny, dramatic, or whatever fits them\n" +
+            "- Use slang, exclamations, and emotions that match your character\n" +
+            "- Be charming and flirty in YOUR character's style\n" +
+            "- DO NOT sound corporate, formal, or generic - be REAL and IN-CHARACTER";
+
+    private static final String ASK_OUT_INSTRUCTIONS =
+            "You just had a great conversation with your match and you're really into them!\n\n" +
+            "Send ONE FINAL message asking them out on a date. Make it:\n" +
+            "- Enthusiastic and excited\n" +
+            "- In character with Clash Royale references\n" +
+            "- A clear invitation to meet up/go on a date\n" +
+            "- 2-3 sentences max\n" +
+            "- Authentic to YOUR character's personality\n" +
+            "Example: 'Yo, wanna meet up at the Arena this weekend? I'll show you my best push strategies over some elixir! 💪'";
+
+    private static final String SCORING_INSTRUCTIONS =
+            "You are evaluating a dating conversation. Rate the user's statement on a scale of 0-10 based on:\n" +
+            "- How appropriate and engaging it is\n" +
+            "- How well it matches the character's personality and interests\n" +
+            "- Social skills and charm\n" +
+            "- Romantic potential\n\n" +
+            "Respond with ONLY a single number from 0 to 10.";
+
+    private static final String EVALUATION_INSTRUCTIONS =
+            "You are evaluating a dating conversation between a Clash Royale character and a user. " +
+            "Based on the 3-message conversation, determine if the user successfully charmed and romanced the character. " +
+            "Consider:\n" +
+            "- Did the user engage with the character's personality?\n" +
+            "- Were their messages interesting, funny, or charming?\n" +
+            "- Did they show genuine interest?\n" +
+            "- Were they appropriate and not creepy/offensive?\n" +
+            "- Did they play along with Clash Royale references?\n\n" +
+            "Respond with ONLY 'yes' if the user successfully romanced them, or 'no' if they failed.";
+
+    private static final String SUMMARY_INSTRUCTIONS =
+            "You keep a running memo of a dating conversation between a Clash Royale character and a user. " +
+            "Update the memo with the new messages. Keep what the character needs to stay consistent: facts the " +
+            "user shared about themselves, names, plans, inside jokes, promises, and how the date is going. " +
+            "Drop small talk. Write at most 120 words in third person.\n\n" +
+            "Respond with ONLY the updated memo.";
+
+    private static final String FUSED_FORMAT_INSTRUCTIONS = fusedFormatInstructions(false);
+    private static final String FUSED_EVALUATION_FORMAT_INSTRUCTIONS = fusedFormatInstructions(true);
+
+    // Prefills the opening brace so a fused reply starts as a JSON object
+    private static final byte[] PREFILL_MESSAGE = new JSONObject().put("role", "assistant").put("content", "{")
+            .toString().getBytes(StandardCharsets.UTF_8);
 
     public CharacterConversationSimulator(String apiKey, String characterPersonality, String userBio) {
         // API key is now hardcoded, but we keep the parameter for compatibility
         this.characterPersonality = characterPersonality;
         this.userBio = userBio;
-        this.conversationHistory = new ArrayList<>();
+        this.history = new ConversationHistory(ConversationHistory.DEFAULT_TOKEN_BUDGET, this::summarizeMessages);
+    }
+
+    /**
+     * Replaces the transport used by all simulators. Requests are only rate limited if it
+     * includes a RateLimitedTransport, as ResilientTransport.shared() does.
+     */
+    public static void setTransport(ApiTransport newTransport) {
+        transport = newTransport;
+    }
+
+    public static ApiTransport getTransport() {
+        return transport;
     }
 
     /**
@@ -58,86 +186,383 @@ public class CharacterConversationSimulator {
      * @throws Exception if the API call fails
      */
     public CharacterResponse sendMessage(String userStatement) throws Exception {
+        return sendMessage(userStatement, null);
+    }
+
+    /**
+     * Sends user statement to Claude, streaming the character's reply as it is generated
+     * @param userStatement What the user said
+     * @param onDelta receives each chunk of reply text as it arrives, or null to wait for the full reply
+     * @return CharacterResponse containing the character's reply and user's score
+     * @throws Exception if the API call fails
+     */
+    public CharacterResponse sendMessage(String userStatement, Consumer<String> onDelta) throws Exception {
+        try {
+            return sendMessageAsync(userStatement, onDelta).verdict.join();
+        } catch (CompletionException e) {
+            throw AppExecutor.unwrap(e);
+        }
+    }
+
+    /**
+     * Sends user statement to Claude without blocking.
+     * The reply future completes as soon as the character has answered; scoring and the
+     * turn-3 romance evaluation then run concurrently and complete the verdict future.
+     * @param userStatement What the user said
+     * @param onDelta receives each chunk of reply text as it arrives, or null to wait for the full reply
+     * @return the pending reply and verdict
+     */
+    public AsyncResponse sendMessageAsync(String userStatement, Consumer<String> onDelta) {
+        if (fusedMode) {
+            // One request answers, scores and judges; fall back to separate calls if the JSON is unusable
+            CompletableFuture<CharacterResponse> verdict = supplyAsync(() -> getFusedResponse(userStatement))
+                    .thenCompose(fused -> fused != null
+                            ? CompletableFuture.completedFuture(fused)
+                            : supplyAsync(() -> replyTo(userStatement, null))
+                                    .thenCompose(characterReply -> gradeTurn(userStatement, characterReply)));
+            return new AsyncResponse(verdict.thenApply(response -> response.message), verdict);
+        }
+
+        CompletableFuture<String> reply = supplyAsync(() -> replyTo(userStatement, onDelta));
+        CompletableFuture<CharacterResponse> verdict = reply.thenCompose(characterReply -> gradeTurn(userStatement, characterReply));
+        return new AsyncResponse(reply, verdict);
+    }
+
+    /**
+     * Adds the user's statement to the history and gets the character's reply to it
+     */
+    private String replyTo(String userStatement, Consumer<String> onDelta) throws Exception {
         // Add user message to history
-        JSONObject userMessage = new JSONObject();
-        userMessage.put("role", "user");
-        userMessage.put("content", userStatement);
-        conversationHistory.add(userMessage);
+        addToHistory("user", userStatement);
 
         // Get character's response
-        String characterReply = getCharacterReply();
+        String characterReply = onDelta != null ? getCharacterReplyStreaming(onDelta) : getCharacterReply();
 
         // Add character's response to history
-        JSONObject assistantMessage = new JSONObject();
-        assistantMessage.put("role", "assistant");
-        assistantMessage.put("content", characterReply);
-        conversationHistory.add(assistantMessage);
+        addToHistory("assistant", characterReply);
 
         // Increment character message count
         characterMessageCount++;
+        return characterReply;
+    }
 
+    /**
+     * Scores the turn and, after 3 messages, evaluates the date - both requests run concurrently
+     */
+    private CompletableFuture<CharacterResponse> gradeTurn(String userStatement, String characterReply) {
         // Get score for user's statement
-        int score = scoreUserStatement(userStatement, characterReply);
+        CompletableFuture<Integer> score = supplyAsync(() -> scoreUserStatement(userStatement, characterReply));
 
         // After 3 messages, evaluate if the date was successful
+        CompletableFuture<Boolean> romanced;
         if (characterMessageCount >= 3 && !dateFailed) {
-            dateFailed = !evaluateRomanceSuccess();
+            String memo;
+            List<JSONObject> recent;
+            synchronized (history) {
+                memo = history.memo();
+                recent = history.window();
+            }
+            romanced = supplyAsync(() -> evaluateRomanceSuccess(memo, recent));
+        } else {
+            romanced = CompletableFuture.completedFuture(true);
+        }
+
+        return score.thenCombine(romanced, (scoreValue, success) -> {
+            if (!success) {
+                dateFailed = true;
+            }
+            return new CharacterResponse(characterReply, scoreValue, dateFailed);
+        });
+    }
+
+    /**
+     * Builds the system blocks: the static prefix is marked for prompt caching, the per-session
+     * suffix (persona and bio) follows it with its own breakpoint so repeated turns reuse it too
+     */
+    private static JSONArray systemBlocks(String staticPrefix, String sessionSuffix) {
+        JSONArray system = new JSONArray();
+        system.put(cachedTextBlock(staticPrefix));
+        if (sessionSuffix != null) {
+            system.put(cachedTextBlock(sessionSuffix));
         }
+        return system;
+    }
+
+    private static JSONObject textBlock(String text) {
+        JSONObject block = new JSONObject();
+        block.put("type", "text");
+        block.put("text", text);
+        return block;
+    }
 
-        return new CharacterResponse(characterReply, score, dateFailed);
+    private static JSONObject cachedTextBlock(String text) {
+        JSONObject cacheControl = new JSONObject();
+        cacheControl.put("type", "ephemeral");
+        return textBlock(text).put("cache_control", cacheControl);
+    }
+
+    /**
+     * Persona for the dating-app greetings
+     */
+    private String matchedPersona() {
+        return "You are FULLY IMMERSED as this character: " + characterPersonality + "\n" +
+                "You are on a dating app and just matched with someone who has this bio: " + userBio;
+    }
+
+    private void addToHistory(String role, String content) {
+        history.add(role, content);
+    }
+
+    /**
+     * When enabled, each turn is a single request returning the reply, score and verdict as JSON.
+     * Fused turns are not streamed.
+     */
+    public void setFusedMode(boolean enabled) {
+        this.fusedMode = enabled;
+    }
+
+    /**
+     * Gets the reply, score and (on turn 3) verdict from one structured request
+     * @return the parsed response, or null if the model did not return the expected JSON
+     */
+    private CharacterResponse getFusedResponse(String userStatement) throws Exception {
+        boolean evaluating = characterMessageCount + 1 >= 3 && !dateFailed;
+
+        addToHistory("user", userStatement);
+        RequestEncoder.Body requestBody = buildCharacterReplyRequest(false,
+                evaluating ? FUSED_EVALUATION_FORMAT_INSTRUCTIONS : FUSED_FORMAT_INSTRUCTIONS);
+        String response;
+        try {
+            response = makeAPICall(requestBody, requestBody.length() / BYTES_PER_TOKEN, FUSED_MAX_TOKENS, CallKind.REPLY);
+        } finally {
+            requestBody.release();
+        }
+
+        String message;
+        int scoreValue;
+        boolean success = true;
+        try {
+            JSONObject fused = new JSONObject("{" + response);
+            message = fused.getString("message").trim();
+            scoreValue = fused.getInt("score");
+            if (message.isEmpty() || scoreValue < 0 || scoreValue > 10) {
+                throw new JSONException("Out of range fields");
+            }
+            if (evaluating) {
+                String verdict = fused.getString("verdict").trim().toLowerCase();
+                if (!verdict.equals("yes") && !verdict.equals("no")) {
+                    throw new JSONException("Verdict was " + verdict);
+                }
+                success = verdict.equals("yes");
+            }
+        } catch (JSONException e) {
+            System.err.println("Warning: Malformed fused response, falling back to separate calls. Response was: " + response);
+            history.removeLast();
+            return null;
+        }
+
+        addToHistory("assistant", message);
+        characterMessageCount++;
+
+        this.userP.updateScore(scoreValue);
+        if (!success) {
+            dateFailed = true;
+        }
+        return new CharacterResponse(message, this.userP.getScore(), dateFailed);
+    }
+
+    private static String fusedFormatInstructions(boolean evaluating) {
+        String format = "RESPONSE FORMAT:\n" +
+                "Respond with ONLY a JSON object, no other text:\n" +
+                "{\"message\": \"<your in-character reply>\", \"score\": <0-10>" +
+                (evaluating ? ", \"verdict\": \"<yes or no>\"}\n" : "}\n") +
+                "- \"score\" rates the user's latest message from 0-10 on how appropriate and engaging it is, " +
+                "how well it matches your personality and interests, social skills and charm, and romantic potential\n";
+        if (evaluating) {
+            format += "- \"verdict\" is \"yes\" if the user successfully charmed and romanced you over this 3-message " +
+                    "conversation (engaged with your personality, was interesting, funny or charming, showed genuine interest, " +
+                    "stayed appropriate, played along with Clash Royale references), otherwise \"no\"\n";
+        }
+        return format;
+    }
+
+    /**
+     * A finished conversation kept for regrading later
+     */
+    public static class Transcript {
+        public final String id;
+        public final String characterPersonality;
+        public final String userBio;
+        // "role"/"content" messages, alternating user and assistant
+        public final List<JSONObject> messages;
+
+        public Transcript(String id, String characterPersonality, String userBio, List<JSONObject> messages) {
+            this.id = id;
+            this.characterPersonality = characterPersonality;
+            this.userBio = userBio;
+            this.messages = List.copyOf(messages);
+        }
+    }
+
+    /**
+     * Snapshots this conversation so it can be stored and graded in bulk later
+     */
+    public Transcript getTranscript(String id) {
+        return new Transcript(id, characterPersonality, userBio, history.all());
+    }
+
+    /**
+     * Regrades stored conversations as one Message Batches job instead of a request per turn.
+     * Every user message that got a reply is scored and every conversation gets a verdict;
+     * grades are passed to onGrade as the results are read. Blocks until the batch is done,
+     * which can take minutes, so call it from a background job rather than the UI.
+     */
+    public static void gradeTranscripts(List<Transcript> transcripts, Consumer<BatchGrader.Grade> onGrade) throws Exception {
+        BatchGrader grader = new BatchGrader(transport);
+        for (Transcript transcript : transcripts) {
+            List<JSONObject> messages = transcript.messages;
+            for (int i = 0; i + 1 < messages.size(); i++) {
+                if (messages.get(i).getString("role").equals("user")
+                        && messages.get(i + 1).getString("role").equals("assistant")) {
+                    grader.addScore(transcript.id, i, buildScoringRequest(transcript.characterPersonality,
+                            transcript.userBio, messages.get(i).getString("content"), messages.get(i + 1).getString("content")));
+                }
+            }
+            if (!messages.isEmpty()) {
+                grader.addVerdict(transcript.id,
+                        buildEvaluationRequest(transcript.characterPersonality, transcript.userBio, null, messages));
+            }
+        }
+        if (grader.getQueuedCount() > 0) {
+            grader.run(onGrade);
+        }
+    }
+
+    /**
+     * The two halves of an asynchronous turn
+     */
+    public static class AsyncResponse {
+        // Completes with the character's reply text
+        public final CompletableFuture<String> reply;
+        // Completes with the reply, score and whether the date failed
+        public final CompletableFuture<CharacterResponse> verdict;
+
+        AsyncResponse(CompletableFuture<String> reply, CompletableFuture<CharacterResponse> verdict) {
+            this.reply = reply;
+            this.verdict = verdict;
+        }
+    }
+
+    private static <T> CompletableFuture<T> supplyAsync(Callable<T> task) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return task.call();
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        }, API_EXECUTOR);
     }
 
     /**
      * Gets the character's response based on conversation history
      */
     private String getCharacterReply() throws Exception {
+        RequestEncoder.Body requestBody = buildCharacterReplyRequest(false, null);
+        try {
+            return makeAPICall(requestBody, requestBody.length() / BYTES_PER_TOKEN, REPLY_MAX_TOKENS, CallKind.REPLY);
+        } finally {
+            requestBody.release();
+        }
+    }
+
+    /**
+     * Gets the character's response as a server-sent event stream
+     */
+    private String getCharacterReplyStreaming(Consumer<String> onDelta) throws Exception {
+        RequestEncoder.Body requestBody = buildCharacterReplyRequest(true, null);
+        try {
+            return makeStreamingAPICall(requestBody, requestBody.length() / BYTES_PER_TOKEN, REPLY_MAX_TOKENS, onDelta);
+        } finally {
+            requestBody.release();
+        }
+    }
+
+    /**
+     * Builds the reply request from the messages as they were serialized when added to the history.
+     * The caller must release the body once the response has been read.
+     * @param formatInstructions the fused response format, or null for a plain reply
+     */
+    private RequestEncoder.Body buildCharacterReplyRequest(boolean stream, String formatInstructions) {
+        synchronized (history) {
+            String memo = history.memo();
+            if (replyHead == null || memo != replyHeadMemo || stream != replyHeadStream
+                    || formatInstructions != replyHeadFormat) {
+                replyHead = RequestEncoder.head(buildCharacterReplyFields(memo, stream, formatInstructions));
+                replyHeadMemo = memo;
+                replyHeadStream = stream;
+                replyHeadFormat = formatInstructions;
+            }
+            // Only the recent window is sent; older turns are in the memo
+            return RequestEncoder.encode(replyHead, history.encodedWindow(),
+                    formatInstructions != null ? PREFILL_MESSAGE : null);
+        }
+    }
+
+    /**
+     * Everything in the reply request except the messages
+     */
+    private JSONObject buildCharacterReplyFields(String memo, boolean stream, String formatInstructions) {
         JSONObject requestBody = new JSONObject();
         requestBody.put("model", "claude-haiku-4-5-20251001");
-        requestBody.put("max_tokens", 500);
+        requestBody.put("max_tokens", formatInstructions != null ? FUSED_MAX_TOKENS : REPLY_MAX_TOKENS);
+        if (stream) {
+            requestBody.put("stream", true);
+        }
 
         // Create system message with character personality
-        String systemPrompt = "You are FULLY IMMERSED as this character: " + characterPersonality + "\n" +
-                "You are on a date with someone who has this bio: " + userBio + "\n\n" +
-                "CRITICAL INSTRUCTIONS:\n" +
-                "- Talk EXACTLY like your character would in Clash Royale - use their speech patterns, mannerisms, and vocabulary\n" +
-                "- Make HEAVY references to the Clash Royale universe (Arena, Elixir, King's Tower, battles, clans, etc.)\n" +
-                "- Be authentic and natural - NOT generic or AI-like\n" +
-                "- Show your character's unique personality strongly - be quirky, funny, dramatic, or whatever fits them\n" +
-                "- Use slang, exclamations, and emotions that match your character\n" +
-                "- Reference specific Clash Royale gameplay mechanics and lore\n" +
-                "- Keep responses 2-3 sentences max\n" +
-                "- DO NOT sound corporate, formal, or generic - be REAL and IN-CHARACTER";
-
-        requestBody.put("system", systemPrompt);
-
-        // Convert conversation history to JSONArray
-        JSONArray messages = new JSONArray();
-        for (JSONObject msg : conversationHistory) {
-            messages.put(msg);
+        JSONArray system = systemBlocks(REPLY_INSTRUCTIONS,
+                "You are FULLY IMMERSED as this character: " + characterPersonality + "\n" +
+                "You are on a date with someone who has this bio: " + userBio);
+        if (memo != null) {
+            // After the cached blocks, since it changes as the date goes on
+            system.put(textBlock("Earlier in this date (summary): " + memo));
         }
+        if (formatInstructions != null) {
+            system.put(textBlock(formatInstructions));
+        }
+        requestBody.put("system", system);
 
-        requestBody.put("messages", messages);
-
-        return makeAPICall(requestBody);
+        return requestBody;
     }
 
     /**
      * Scores the user's statement based on how well it resonates with the character
      */
     private int scoreUserStatement(String userStatement, String characterReply) throws Exception {
+        String response = makeAPICall(buildScoringRequest(characterPersonality, userBio, userStatement, characterReply),
+                CallKind.GRADING);
+
+        int scoreValue = parseScore(response);
+        if (scoreValue < 0) {
+            // Default to 5 if parsing fails
+            System.err.println("Warning: Could not parse score, defaulting to 5. Response was: " + response);
+            return 5;
+        }
+        this.userP.updateScore(scoreValue);
+        return this.userP.getScore();
+    }
+
+    /**
+     * Builds the request that rates one user statement; also used for batch grading
+     */
+    static JSONObject buildScoringRequest(String characterPersonality, String userBio,
+                                          String userStatement, String characterReply) {
         JSONObject requestBody = new JSONObject();
         requestBody.put("model", "claude-haiku-4-5-20251001");
         requestBody.put("max_tokens", 10);
 
         // Create scoring prompt as system message
-        String systemPrompt = "You are evaluating a dating conversation. Rate the user's statement on a scale of 0-10 based on:\n" +
-                "- How appropriate and engaging it is\n" +
-                "- How well it matches the character's personality and interests\n" +
-                "- Social skills and charm\n" +
-                "- Romantic potential\n\n" +
-                "Respond with ONLY a single number from 0 to 10.";
-
-        requestBody.put("system", systemPrompt);
+        requestBody.put("system", systemBlocks(SCORING_INSTRUCTIONS, null));
 
         // Create user message with context
         JSONArray messages = new JSONArray();
@@ -153,73 +578,146 @@ public class CharacterConversationSimulator {
         messages.put(scoringMessage);
 
         requestBody.put("messages", messages);
+        return requestBody;
+    }
 
-        String response = makeAPICall(requestBody);
-
+    /**
+     * Gets the rating out of a scoring reply, or -1 if it has no number
+     */
+    static int parseScore(String response) {
         try {
             // Extract just the number from the response
-            String trimmed = response.trim().replaceAll("[^0-9]", "");
-            int scoreValue = Integer.parseInt(trimmed);
-            this.userP.updateScore(scoreValue);
-            return this.userP.getScore();
+            return Integer.parseInt(response.trim().replaceAll("[^0-9]", ""));
         } catch (NumberFormatException e) {
-            // Default to 5 if parsing fails
-            System.err.println("Warning: Could not parse score, defaulting to 5. Response was: " + response);
-            return 5;
+            return -1;
         }
     }
 
     /**
      * Makes the actual API call to Anthropic Claude
      */
-    private String makeAPICall(JSONObject requestBody) throws Exception {
-        URL url = new URL(API_URL);
-        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-        connection.setRequestMethod("POST");
-        connection.setRequestProperty("Content-Type", "application/json");
-        connection.setRequestProperty("x-api-key", APIKey.API_KEY);
-        connection.setRequestProperty("anthropic-version", ANTHROPIC_VERSION);
-        connection.setDoOutput(true);
-
-        // Send request
-        try (OutputStream os = connection.getOutputStream()) {
-            byte[] input = requestBody.toString().getBytes("utf-8");
-            os.write(input, 0, input.length);
-        }
-
-        // Read response
-        int responseCode = connection.getResponseCode();
-        if (responseCode == HttpURLConnection.HTTP_OK) {
-            BufferedReader in = new BufferedReader(
-                    new InputStreamReader(connection.getInputStream(), "utf-8"));
-            StringBuilder response = new StringBuilder();
-            String line;
+    private String makeAPICall(JSONObject requestBody, CallKind kind) throws Exception {
+        byte[] input = requestBody.toString().getBytes(StandardCharsets.UTF_8);
+        return makeAPICall(ApiTransport.RequestBody.of(input), input.length / BYTES_PER_TOKEN,
+                requestBody.getInt("max_tokens"), kind);
+    }
 
-            while ((line = in.readLine()) != null) {
-                response.append(line);
+    /**
+     * Sends the request, charged against the rate limiter on every attempt
+     * @param estimatedInputTokens charged against the input budget until the response reports the real count
+     */
+    private String makeAPICall(ApiTransport.RequestBody requestBody, long estimatedInputTokens, int maxTokens,
+                               CallKind kind) throws Exception {
+        ApiTransport.RequestBody charged = RateLimitedTransport.charged(requestBody, kind.priority,
+                estimatedInputTokens, maxTokens);
+        try (ApiTransport.ApiResponse response = kind.hedged ? transport.postHedged(charged) : transport.post(charged)) {
+            String responseText = response.bodyAsString();
+
+            if (response.statusCode != 200) {
+                throw new Exception("API Error (Code " + response.statusCode + "): " + responseText);
             }
-            in.close();
 
             // Parse JSON response - Claude's format
-            JSONObject jsonResponse = new JSONObject(response.toString());
+            JSONObject jsonResponse = new JSONObject(responseText);
+            JSONObject usage = jsonResponse.optJSONObject("usage");
+            TokenUsageStats.record(usage);
+            response.settle(usage);
 
             // Claude returns content as an array of content blocks
             JSONArray contentArray = jsonResponse.getJSONArray("content");
             String reply = contentArray.getJSONObject(0).getString("text");
 
             return reply;
-        } else {
-            BufferedReader errorReader = new BufferedReader(
-                    new InputStreamReader(connection.getErrorStream(), "utf-8"));
-            StringBuilder errorResponse = new StringBuilder();
+        }
+    }
+
+    /**
+     * Makes a streaming API call, passing each text delta to onDelta as it arrives
+     * @return the full reply once the stream ends
+     */
+    private String makeStreamingAPICall(ApiTransport.RequestBody requestBody, long estimatedInputTokens, int maxTokens,
+                                        Consumer<String> onDelta) throws Exception {
+        ApiTransport.RequestBody charged = RateLimitedTransport.charged(requestBody, RateLimiter.Priority.INTERACTIVE,
+                estimatedInputTokens, maxTokens);
+
+        try (ApiTransport.ApiResponse response = transport.post(charged)) {
+            if (response.statusCode != 200) {
+                throw new Exception("API Error (Code " + response.statusCode + "): " + response.bodyAsString());
+            }
+
+            BufferedReader in = new BufferedReader(new InputStreamReader(response.body, StandardCharsets.UTF_8));
+            StringBuilder reply = new StringBuilder();
+            JSONObject usage = new JSONObject();
+            String eventType = null;
+            StringBuilder eventData = new StringBuilder();
             String line;
 
-            while ((line = errorReader.readLine()) != null) {
-                errorResponse.append(line);
+            // Events are "event:" and "data:" lines terminated by a blank line
+            while ((line = in.readLine()) != null) {
+                if (line.startsWith("event:")) {
+                    eventType = line.substring(6).trim();
+                } else if (line.startsWith("data:")) {
+                    eventData.append(line.substring(5).trim());
+                } else if (line.isEmpty() && eventData.length() > 0) {
+                    if (!handleStreamEvent(eventType, eventData.toString(), reply, usage, onDelta)) {
+                        break;
+                    }
+                    eventType = null;
+                    eventData.setLength(0);
+                }
             }
-            errorReader.close();
 
-            throw new Exception("API Error (Code " + responseCode + "): " + errorResponse.toString());
+            response.settle(usage.length() > 0 ? usage : null);
+            return reply.toString();
+        }
+    }
+
+    /**
+     * Handles one server-sent event
+     * @param usage collects the token counts spread over the stream
+     * @return false once the message is complete
+     */
+    private boolean handleStreamEvent(String eventType, String data, StringBuilder reply, JSONObject usage,
+                                      Consumer<String> onDelta) throws Exception {
+        JSONObject event = new JSONObject(data);
+        String type = eventType != null ? eventType : event.optString("type");
+
+        switch (type) {
+            case "content_block_delta":
+                JSONObject delta = event.getJSONObject("delta");
+                if ("text_delta".equals(delta.optString("type"))) {
+                    String text = delta.getString("text");
+                    reply.append(text);
+                    onDelta.accept(text);
+                }
+                return true;
+            case "message_start":
+                // Input and cache token counts arrive up front
+                JSONObject startUsage = event.getJSONObject("message").optJSONObject("usage");
+                TokenUsageStats.record(startUsage);
+                mergeUsage(usage, startUsage);
+                return true;
+            case "message_delta":
+                // Output token count arrives at the end
+                JSONObject deltaUsage = event.optJSONObject("usage");
+                TokenUsageStats.record(deltaUsage);
+                mergeUsage(usage, deltaUsage);
+                return true;
+            case "message_stop":
+                return false;
+            case "error":
+                throw new Exception("API Error (stream): " + event.optJSONObject("error"));
+            default:
+                // content_block_start/stop and ping carry no text
+                return true;
+        }
+    }
+
+    private static void mergeUsage(JSONObject total, JSONObject usage) {
+        if (usage != null) {
+            for (String key : usage.keySet()) {
+                total.put(key, usage.get(key));
+            }
         }
     }
 
@@ -227,29 +725,16 @@ public class CharacterConversationSimulator {
      * Gets initial greeting from character based on user's photo
      */
     public String getInitialGreetingWithPhoto(String imagePath) throws Exception {
-        // Read and encode image
-        String base64Image = encodeImageToBase64(imagePath);
-        String mediaType = getMediaType(imagePath);
+        // Read and downscale image - it is base64 encoded as the request is written
+        PhotoPreprocessor.PreparedPhoto photo = PhotoPreprocessor.prepare(imagePath);
+        String mediaType = photo.mediaType;
 
         JSONObject requestBody = new JSONObject();
         requestBody.put("model", "claude-haiku-4-5-20251001");
         requestBody.put("max_tokens", 500);
 
         // Create system message
-        String systemPrompt = "You are FULLY IMMERSED as this character: " + characterPersonality + "\n" +
-                "You are on a dating app and just matched with someone who has this bio: " + userBio + "\n\n" +
-                "You just saw their profile picture. Comment on their appearance, demeanor, and what you notice in the background.\n\n" +
-                "CRITICAL INSTRUCTIONS:\n" +
-                "- Talk EXACTLY like your character would in Clash Royale - use their speech patterns, mannerisms, and vocabulary\n" +
-                "- Make HEAVY references to the Clash Royale universe (Arena, Elixir, King's Tower, battles, clans, etc.)\n" +
-                "- Be authentic and natural - NOT generic or AI-like\n" +
-                "- Show your character's unique personality strongly - be quirky, funny, dramatic, or whatever fits them\n" +
-                "- Use slang, exclamations, and emotions that match your character\n" +
-                "- Be charming and flirty in YOUR character's style\n" +
-                "- Keep it brief (2-3 sentences)\n" +
-                "- DO NOT sound corporate, formal, or generic - be REAL and IN-CHARACTER";
-
-        requestBody.put("system", systemPrompt);
+        requestBody.put("system", systemBlocks(PHOTO_GREETING_INSTRUCTIONS, matchedPersona()));
 
         // Create message with image
         JSONArray messages = new JSONArray();
@@ -265,7 +750,6 @@ public class CharacterConversationSimulator {
         JSONObject imageSource = new JSONObject();
         imageSource.put("type", "base64");
         imageSource.put("media_type", mediaType);
-        imageSource.put("data", base64Image);
         imageContent.put("source", imageSource);
         content.put(imageContent);
 
@@ -280,7 +764,10 @@ public class CharacterConversationSimulator {
 
         requestBody.put("messages", messages);
 
-        return makeAPICall(requestBody);
+        // Greetings are hedged: the chat opens empty until one arrives
+        long estimatedInputTokens = requestBody.toString().length() / BYTES_PER_TOKEN + IMAGE_TOKENS;
+        return makeAPICall(new ImageRequestBody(requestBody, imageSource, photo), estimatedInputTokens,
+                requestBody.getInt("max_tokens"), CallKind.GREETING);
     }
 
     /**
@@ -291,19 +778,7 @@ public class CharacterConversationSimulator {
         requestBody.put("model", "claude-haiku-4-5-20251001");
         requestBody.put("max_tokens", 500);
 
-        String systemPrompt = "You are FULLY IMMERSED as this character: " + characterPersonality + "\n" +
-                "You are on a dating app and just matched with someone who has this bio: " + userBio + "\n\n" +
-                "Start the conversation with a brief, charming greeting (2-3 sentences).\n\n" +
-                "CRITICAL INSTRUCTIONS:\n" +
-                "- Talk EXACTLY like your character would in Clash Royale - use their speech patterns, mannerisms, and vocabulary\n" +
-                "- Make HEAVY references to the Clash Royale universe (Arena, Elixir, King's Tower, battles, clans, etc.)\n" +
-                "- Be authentic and natural - NOT generic or AI-like\n" +
-                "- Show your character's unique personality strongly - be quirky, funny, dramatic, or whatever fits them\n" +
-                "- Use slang, exclamations, and emotions that match your character\n" +
-                "- Be charming and flirty in YOUR character's style\n" +
-                "- DO NOT sound corporate, formal, or generic - be REAL and IN-CHARACTER";
-
-        requestBody.put("system", systemPrompt);
+        requestBody.put("system", systemBlocks(GREETING_INSTRUCTIONS, matchedPersona()));
 
         JSONArray messages = new JSONArray();
         JSONObject userMessage = new JSONObject();
@@ -313,31 +788,7 @@ public class CharacterConversationSimulator {
 
         requestBody.put("messages", messages);
 
-        return makeAPICall(requestBody);
-    }
-
-    /**
-     * Encodes image file to base64 string
-     */
-    private String encodeImageToBase64(String imagePath) throws Exception {
-        File imageFile = new File(imagePath);
-        FileInputStream fileInputStream = new FileInputStream(imageFile);
-        byte[] imageBytes = new byte[(int) imageFile.length()];
-        fileInputStream.read(imageBytes);
-        fileInputStream.close();
-        return Base64.getEncoder().encodeToString(imageBytes);
-    }
-
-    /**
-     * Gets media type from file extension
-     */
-    private String getMediaType(String imagePath) {
-        String lower = imagePath.toLowerCase();
-        if (lower.endsWith(".png")) return "image/png";
-        if (lower.endsWith(".jpg") || lower.endsWith(".jpeg")) return "image/jpeg";
-        if (lower.endsWith(".gif")) return "image/gif";
-        if (lower.endsWith(".webp")) return "image/webp";
-        return "image/jpeg"; // default
+        return makeAPICall(requestBody, CallKind.GREETING);
     }
 
     /**
@@ -348,17 +799,8 @@ public class CharacterConversationSimulator {
         requestBody.put("model", "claude-haiku-4-5-20251001");
         requestBody.put("max_tokens", 200);
 
-        String systemPrompt = "You are FULLY IMMERSED as this character: " + characterPersonality + "\n" +
-                "You just had a great conversation with your match and you're really into them!\n\n" +
-                "Send ONE FINAL message asking them out on a date. Make it:\n" +
-                "- Enthusiastic and excited\n" +
-                "- In character with Clash Royale references\n" +
-                "- A clear invitation to meet up/go on a date\n" +
-                "- 2-3 sentences max\n" +
-                "- Authentic to YOUR character's personality\n" +
-                "Example: 'Yo, wanna meet up at the Arena this weekend? I'll show you my best push strategies over some elixir! 💪'";
-
-        requestBody.put("system", systemPrompt);
+        requestBody.put("system", systemBlocks(ASK_OUT_INSTRUCTIONS,
+                "You are FULLY IMMERSED as this character: " + characterPersonality));
 
         JSONArray messages = new JSONArray();
         JSONObject userMessage = new JSONObject();
@@ -368,28 +810,27 @@ public class CharacterConversationSimulator {
 
         requestBody.put("messages", messages);
 
-        return makeAPICall(requestBody);
+        return makeAPICall(requestBody, CallKind.REPLY);
     }
 
     /**
      * Evaluates if the user successfully romanced the character after 3 messages
      */
-    private boolean evaluateRomanceSuccess() throws Exception {
+    private boolean evaluateRomanceSuccess(String memo, List<JSONObject> recent) throws Exception {
+        String response = makeAPICall(buildEvaluationRequest(characterPersonality, userBio, memo, recent), CallKind.GRADING);
+        return parseVerdict(response);
+    }
+
+    /**
+     * Builds the request that judges a whole date; also used for batch grading
+     */
+    static JSONObject buildEvaluationRequest(String characterPersonality, String userBio, String memo,
+                                             List<JSONObject> transcript) {
         JSONObject requestBody = new JSONObject();
         requestBody.put("model", "claude-haiku-4-5-20251001");
         requestBody.put("max_tokens", 10);
 
-        String systemPrompt = "You are evaluating a dating conversation between a Clash Royale character and a user. " +
-                "Based on the 3-message conversation, determine if the user successfully charmed and romanced the character. " +
-                "Consider:\n" +
-                "- Did the user engage with the character's personality?\n" +
-                "- Were their messages interesting, funny, or charming?\n" +
-                "- Did they show genuine interest?\n" +
-                "- Were they appropriate and not creepy/offensive?\n" +
-                "- Did they play along with Clash Royale references?\n\n" +
-                "Respond with ONLY 'yes' if the user successfully romanced them, or 'no' if they failed.";
-
-        requestBody.put("system", systemPrompt);
+        requestBody.put("system", systemBlocks(EVALUATION_INSTRUCTIONS, null));
 
         // Create evaluation message with full conversation context
         JSONArray messages = new JSONArray();
@@ -399,9 +840,12 @@ public class CharacterConversationSimulator {
         StringBuilder conversationText = new StringBuilder();
         conversationText.append("Character Personality: ").append(characterPersonality).append("\n");
         conversationText.append("User Bio: ").append(userBio).append("\n\n");
+        if (memo != null) {
+            conversationText.append("Earlier in the conversation (summary): ").append(memo).append("\n\n");
+        }
         conversationText.append("Conversation:\n");
 
-        for (JSONObject msg : conversationHistory) {
+        for (JSONObject msg : transcript) {
             String role = msg.getString("role");
             String content = msg.getString("content");
             conversationText.append(role.equals("user") ? "User: " : "Character: ")
@@ -413,16 +857,47 @@ public class CharacterConversationSimulator {
         messages.put(evalMessage);
 
         requestBody.put("messages", messages);
+        return requestBody;
+    }
 
-        String response = makeAPICall(requestBody);
+    static boolean parseVerdict(String response) {
         return response.trim().toLowerCase().contains("yes");
     }
 
+    /**
+     * Folds older messages into the running memo with a short background request
+     */
+    private String summarizeMessages(String memo, List<JSONObject> messages) throws Exception {
+        JSONObject requestBody = new JSONObject();
+        requestBody.put("model", "claude-haiku-4-5-20251001");
+        requestBody.put("max_tokens", 200);
+
+        requestBody.put("system", systemBlocks(SUMMARY_INSTRUCTIONS, null));
+
+        StringBuilder text = new StringBuilder();
+        text.append("Character Personality: ").append(characterPersonality).append("\n\n");
+        text.append("Memo so far: ").append(memo != null ? memo : "(none)").append("\n\n");
+        text.append("New messages:\n");
+        for (JSONObject msg : messages) {
+            text.append(msg.getString("role").equals("user") ? "User: " : "Character: ")
+                .append(msg.getString("content")).append("\n");
+        }
+
+        JSONArray requestMessages = new JSONArray();
+        JSONObject summaryMessage = new JSONObject();
+        summaryMessage.put("role", "user");
+        summaryMessage.put("content", text.toString());
+        requestMessages.put(summaryMessage);
+        requestBody.put("messages", requestMessages);
+
+        return makeAPICall(requestBody, CallKind.SUMMARY);
+    }
+
     /**
      * Resets the conversation while keeping character and user info
      */
     public void resetConversation() {
-        conversationHistory.clear();
+        history.clear();
         characterMessageCount = 0;
         dateFailed = false;
     }
@@ -468,6 +943,11 @@ public class CharacterConversationSimulator {
             System.out.println("Knight: " + response3.message);
             System.out.println("Your Score: " + response3.score + "/10\n");
 
+            System.out.println("Transport: " + HttpApiTransport.shared().describeStats());
+            System.out.println("Resilience: " + ResilientTransport.shared().describeStats());
+            System.out.println("Rate limits: " + RateLimiter.shared().describe());
+            System.out.println("Tokens: " + TokenUsageStats.describe());
+
         } catch (Exception e) {
             System.err.println("Error: " + e.getMessage());
             e.printStackTrace();
@@ -2,10 +2,14 @@ import javax.swing.*;
 import javax.imageio.ImageIO;
 import java.awt.*;
 import java.awt.event.ActionEvent;
+import java.awt.image.BufferedImage;
 import java.awt.event.ActionListener;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class ChatPanel extends JPanel {
     private JFrame parentFrame;
@@ -29,6 +33,12 @@ public class ChatPanel extends JPanel {
     private static final Color CHAR_BUBBLE_COLOR = new Color(245, 245, 245);
     private static final Color BACKGROUND_COLOR = new Color(255, 255, 255);
 
+    // Streaming replies repaint at most once per frame (~60 fps)
+    private static final int STREAM_FRAME_MILLIS = 16;
+
+    // One request per turn for reply, score and verdict (replies are not streamed in this mode)
+    private static final boolean FUSED_RESPONSES = false;
+
     public ChatPanel(JFrame parent, ClashCard card, String bio, String imagePath) {
         this.parentFrame = parent;
         this.matchedCard = card;
@@ -53,6 +63,7 @@ public class ChatPanel extends JPanel {
         try {
             // API key is hardcoded in CharacterConversationSimulator, so we pass empty string
             chatSimulator = new CharacterConversationSimulator("", characterPersonality, userBio);
+            chatSimulator.setFusedMode(FUSED_RESPONSES);
         } catch (Exception e) {
             JOptionPane.showMessageDialog(parentFrame,
                 "Error initializing chat: " + e.getMessage(),
@@ -104,6 +115,8 @@ public class ChatPanel extends JPanel {
         scrollPane.setHorizontalScrollBarPolicy(JScrollPane.HORIZONTAL_SCROLLBAR_NEVER);
         scrollPane.getVerticalScrollBar().setUnitIncrement(16);
         scrollPane.getViewport().setOpaque(false);
+        // The wallpaper stays put while the bubbles scroll over it, so blitting would drag it along
+        scrollPane.getViewport().setScrollMode(JViewport.SIMPLE_SCROLL_MODE);
         add(scrollPane, BorderLayout.CENTER);
 
         // Input area
@@ -229,45 +242,57 @@ public class ChatPanel extends JPanel {
         addMessage(userMessage, true);
         messageField.setText("");
 
-        // Send to Claude in background thread
-        new Thread(() -> {
-            try {
-                CharacterConversationSimulator.CharacterResponse response =
-                    chatSimulator.sendMessage(userMessage);
+        // Reply text is pushed into this bubble as it streams in
+        StreamingBubble streamingBubble = new StreamingBubble();
 
-                // Update UI on EDT
-                SwingUtilities.invokeLater(() -> {
-                    addMessage(response.message, false);
-
-                    // Check if date ended after 3 messages
-                    if (response.dateFailed) {
-                        // FAILURE CASE: User failed to romance the character
-                        handleDateFailure();
-                    } else if (characterMessageCount >= 3) {
-                        // SUCCESS CASE: User successfully romanced the character
-                        handleDateSuccess();
-                    } else {
-                        // Continue conversation - re-enable input
-                        messageField.setEnabled(true);
-                        sendButton.setEnabled(true);
-                        messageField.requestFocus();
-                    }
-                });
-            } catch (Exception e) {
-                SwingUtilities.invokeLater(() -> {
-                    JOptionPane.showMessageDialog(parentFrame,
-                        "Error: " + e.getMessage(),
-                        "Chat Error",
-                        JOptionPane.ERROR_MESSAGE);
-                    messageField.setEnabled(true);
-                    sendButton.setEnabled(true);
-                });
+        // Send to Claude without blocking; scoring and evaluation finish after the reply is shown
+        CharacterConversationSimulator.AsyncResponse pending =
+            chatSimulator.sendMessageAsync(userMessage, streamingBubble::append);
+
+        pending.reply.whenComplete((reply, error) -> SwingUtilities.invokeLater(() -> {
+            if (error != null) {
+                streamingBubble.cancel();
+                showChatError(error);
+                return;
+            }
+
+            streamingBubble.finish(reply);
+
+            if (characterMessageCount < 3) {
+                // Continue conversation - re-enable input right away
+                messageField.setEnabled(true);
+                sendButton.setEnabled(true);
+                messageField.requestFocus();
+                return;
             }
-        }).start();
+
+            // Final turn - input stays locked until the verdict lands
+            pending.verdict.whenComplete((response, verdictError) -> SwingUtilities.invokeLater(() -> {
+                if (verdictError != null) {
+                    showChatError(verdictError);
+                } else if (response.dateFailed) {
+                    // FAILURE CASE: User failed to romance the character
+                    handleDateFailure();
+                } else {
+                    // SUCCESS CASE: User successfully romanced the character
+                    handleDateSuccess();
+                }
+            }));
+        }));
+    }
+
+    private void showChatError(Throwable error) {
+        JOptionPane.showMessageDialog(parentFrame,
+            "Error: " + AppExecutor.unwrap(error).getMessage(),
+            "Chat Error",
+            JOptionPane.ERROR_MESSAGE);
+        messageField.setEnabled(true);
+        sendButton.setEnabled(true);
     }
 
-    private void addMessage(String text, boolean isUser) {
-        messages.add(new ChatMessage(text, isUser));
+    private ChatMessage addMessage(String text, boolean isUser) {
+        ChatMessage message = new ChatMessage(text, isUser);
+        messages.add(message);
 
         // Play deploy sound for character messages
         if (!isUser) {
@@ -275,32 +300,26 @@ public class ChatPanel extends JPanel {
             characterMessageCount++;
         }
 
-        JPanel messageBubble = createMessageBubble(text, isUser);
+        message.textArea = createMessageText(text, isUser);
+        JPanel messageBubble = createMessageBubble(message.textArea, isUser);
         messagesPanel.add(messageBubble);
         messagesPanel.add(Box.createVerticalStrut(8));
 
         messagesPanel.revalidate();
         messagesPanel.repaint();
 
-        // Scroll to bottom
+        scrollToBottom();
+        return message;
+    }
+
+    private void scrollToBottom() {
         SwingUtilities.invokeLater(() -> {
             JScrollBar vertical = scrollPane.getVerticalScrollBar();
             vertical.setValue(vertical.getMaximum());
         });
     }
 
-    private JPanel createMessageBubble(String text, boolean isUser) {
-        JPanel bubbleContainer = new JPanel(new FlowLayout(
-            isUser ? FlowLayout.RIGHT : FlowLayout.LEFT, 10, 0));
-        bubbleContainer.setOpaque(false);
-        bubbleContainer.setMaximumSize(new Dimension(Integer.MAX_VALUE, Integer.MAX_VALUE));
-
-        // Create bubble
-        JPanel bubble = new JPanel(new BorderLayout());
-        bubble.setBackground(isUser ? USER_BUBBLE_COLOR : CHAR_BUBBLE_COLOR);
-        bubble.setBorder(BorderFactory.createEmptyBorder(12, 16, 12, 16));
-
-        // Message text
+    private JTextArea createMessageText(String text, boolean isUser) {
         JTextArea messageText = new JTextArea(text);
         messageText.setEditable(false);
         messageText.setLineWrap(true);
@@ -308,14 +327,31 @@ public class ChatPanel extends JPanel {
         messageText.setOpaque(false);
         messageText.setFont(new Font("Arial", Font.PLAIN, 15));
         messageText.setForeground(isUser ? Color.WHITE : Color.BLACK);
+        sizeMessageText(messageText);
+        return messageText;
+    }
 
+    private void sizeMessageText(JTextArea messageText) {
         // Set preferred width for text wrapping
+        messageText.setPreferredSize(null);
         messageText.setSize(new Dimension(450, Integer.MAX_VALUE));
         Dimension preferredSize = messageText.getPreferredSize();
         messageText.setPreferredSize(new Dimension(
             Math.min(450, preferredSize.width),
             preferredSize.height
         ));
+    }
+
+    private JPanel createMessageBubble(JTextArea messageText, boolean isUser) {
+        JPanel bubbleContainer = new JPanel(new FlowLayout(
+            isUser ? FlowLayout.RIGHT : FlowLayout.LEFT, 10, 0));
+        bubbleContainer.setOpaque(false);
+        bubbleContainer.setMaximumSize(new Dimension(Integer.MAX_VALUE, Integer.MAX_VALUE));
+
+        // Create bubble
+        JPanel bubble = new JPanel(new BorderLayout());
+        bubble.setBackground(isUser ? USER_BUBBLE_COLOR : CHAR_BUBBLE_COLOR);
+        bubble.setBorder(BorderFactory.createEmptyBorder(12, 16, 12, 16));
 
         bubble.add(messageText, BorderLayout.CENTER);
 
@@ -338,8 +374,8 @@ public class ChatPanel extends JPanel {
     }
 
     private void sendInitialGreeting() {
-        // Send initial greeting in background thread
-        new Thread(() -> {
+        // Send initial greeting in background
+        AppExecutor.run(AppExecutor.TaskType.GREETING, () -> {
             try {
                 String greeting;
                 if (userImagePath != null && !userImagePath.isEmpty()) {
@@ -360,7 +396,7 @@ public class ChatPanel extends JPanel {
                     addMessage("Hey! I'm excited to chat with you!", false);
                 });
             }
-        }).start();
+        });
     }
 
     private void handleDateFailure() {
@@ -371,24 +407,17 @@ public class ChatPanel extends JPanel {
         // Play crying king sound
         AudioPlayer.playCryingKing();
 
-        // Show failure message and restart after delay
-        new Thread(() -> {
-            try {
-                Thread.sleep(2000); // Wait 2 seconds for crying sound
-                SwingUtilities.invokeLater(() -> {
-                    JOptionPane.showMessageDialog(parentFrame,
-                        "You failed to romance " + matchedCard.name + "!\n" +
-                        "Better luck next time in the Arena!",
-                        "Date Failed",
-                        JOptionPane.INFORMATION_MESSAGE);
-
-                    // Restart to bio entry
-                    restartToBioEntry();
-                });
-            } catch (InterruptedException e) {
-                e.printStackTrace();
-            }
-        }).start();
+        // Show failure message and restart once the crying sound has played
+        AppExecutor.schedule(AppExecutor.TaskType.DATE_OUTCOME, () -> SwingUtilities.invokeLater(() -> {
+            JOptionPane.showMessageDialog(parentFrame,
+                "You failed to romance " + matchedCard.name + "!\n" +
+                "Better luck next time in the Arena!",
+                "Date Failed",
+                JOptionPane.INFORMATION_MESSAGE);
+
+            // Restart to bio entry
+            restartToBioEntry();
+        }), 2, TimeUnit.SECONDS);
     }
 
     private void handleDateSuccess() {
@@ -397,9 +426,15 @@ public class ChatPanel extends JPanel {
         sendButton.setEnabled(false);
 
         // Get final "asking out" message in background
-        new Thread(() -> {
-            try {
-                String askOutMessage = chatSimulator.getFinalAskOutMessage();
+        AppExecutor.supply(AppExecutor.TaskType.DATE_OUTCOME, chatSimulator::getFinalAskOutMessage)
+            .whenComplete((askOutMessage, error) -> {
+                if (error != null) {
+                    error.printStackTrace();
+                    SwingUtilities.invokeLater(() -> {
+                        restartToBioEntry();
+                    });
+                    return;
+                }
 
                 // Display the final message
                 SwingUtilities.invokeLater(() -> {
@@ -407,8 +442,7 @@ public class ChatPanel extends JPanel {
                 });
 
                 // Wait a few seconds, then restart
-                Thread.sleep(3000);
-                SwingUtilities.invokeLater(() -> {
+                AppExecutor.schedule(AppExecutor.TaskType.DATE_OUTCOME, () -> SwingUtilities.invokeLater(() -> {
                     JOptionPane.showMessageDialog(parentFrame,
                         "Success! You romanced " + matchedCard.name + "!\n" +
                         "They want to see you again!",
@@ -417,14 +451,8 @@ public class ChatPanel extends JPanel {
 
                     // Restart to bio entry
                     restartToBioEntry();
-                });
-            } catch (Exception e) {
-                e.printStackTrace();
-                SwingUtilities.invokeLater(() -> {
-                    restartToBioEntry();
-                });
-            }
-        }).start();
+                }), 3, TimeUnit.SECONDS);
+            });
     }
 
     private void restartToBioEntry() {
@@ -438,6 +466,7 @@ public class ChatPanel extends JPanel {
     private static class ChatMessage {
         String text;
         boolean isUser;
+        JTextArea textArea;
 
         ChatMessage(String text, boolean isUser) {
             this.text = text;
@@ -445,6 +474,82 @@ public class ChatPanel extends JPanel {
         }
     }
 
+    /**
+     * Character bubble that fills in while the reply streams.
+     * Deltas arrive on the network thread; the text area is refreshed at most once per frame on the EDT.
+     */
+    private class StreamingBubble {
+        private final StringBuilder pending = new StringBuilder();
+        private final AtomicBoolean created = new AtomicBoolean(false);
+        private ChatMessage message;
+        private Timer frameTimer;
+        private boolean dirty = false;
+        private boolean done = false;
+
+        // Called off the EDT for every text delta
+        void append(String delta) {
+            synchronized (pending) {
+                pending.append(delta);
+                dirty = true;
+            }
+            if (created.compareAndSet(false, true)) {
+                SwingUtilities.invokeLater(this::create);
+            }
+        }
+
+        private void create() {
+            if (done) {
+                return;
+            }
+            message = addMessage(snapshot(), false);
+            frameTimer = new Timer(STREAM_FRAME_MILLIS, e -> flush());
+            frameTimer.start();
+        }
+
+        private String snapshot() {
+            synchronized (pending) {
+                dirty = false;
+                return pending.toString();
+            }
+        }
+
+        private void flush() {
+            synchronized (pending) {
+                if (!dirty) {
+                    return;
+                }
+            }
+            showText(snapshot());
+        }
+
+        private void showText(String text) {
+            message.text = text;
+            message.textArea.setText(text);
+            sizeMessageText(message.textArea);
+            messagesPanel.revalidate();
+            messagesPanel.repaint();
+            scrollToBottom();
+        }
+
+        // Called on the EDT with the complete reply
+        void finish(String fullText) {
+            cancel();
+            if (message == null) {
+                addMessage(fullText, false);
+            } else {
+                showText(fullText);
+            }
+        }
+
+        // Called on the EDT when the request fails
+        void cancel() {
+            done = true;
+            if (frameTimer != null) {
+                frameTimer.stop();
+            }
+        }
+    }
+
     // Rounded border class (reused from SwipePanel)
     private static class RoundedBorder extends javax.swing.border.AbstractBorder {
         private int radius;
@@ -487,14 +592,38 @@ public class ChatPanel extends JPanel {
     private static class BackgroundPanel extends JPanel {
         private Image backgroundImage;
         private static final float IMAGE_OPACITY = 0.15f;
+        private static CompletableFuture<Image> wallpaper;
+
+        // The wallpaper already scaled and faded over the background color at the viewport's current size
+        private BufferedImage composited;
 
         public BackgroundPanel() {
             setOpaque(true);
             setBackground(BACKGROUND_COLOR);
-            loadBackgroundImage();
+
+            // Decoding the 4K wallpaper is slow, so the chat opens first and the wallpaper fades in after
+            wallpaper().thenAccept(image -> {
+                if (image != null) {
+                    SwingUtilities.invokeLater(() -> {
+                        backgroundImage = image;
+                        composited = null;
+                        repaint();
+                    });
+                }
+            });
         }
 
-        private void loadBackgroundImage() {
+        /**
+         * Loads the wallpaper once and shares it with every chat after the first
+         */
+        private static synchronized CompletableFuture<Image> wallpaper() {
+            if (wallpaper == null) {
+                wallpaper = AppExecutor.supply(AppExecutor.TaskType.IMAGE, BackgroundPanel::loadBackgroundImage);
+            }
+            return wallpaper;
+        }
+
+        private static Image loadBackgroundImage() {
             // Try to load one of the nice wallpaper images
             String[] wallpaperPaths = {
                 "resources/stadium-clash-royale-4k-ec.jpg",
@@ -509,31 +638,51 @@ public class ChatPanel extends JPanel {
                 try {
                     File imageFile = new File(path);
                     if (imageFile.exists()) {
-                        backgroundImage = ImageIO.read(imageFile);
-                        break;
+                        return ImageIO.read(imageFile);
                     }
                 } catch (Exception e) {
                     // Continue trying other paths
                 }
             }
+            return null;
         }
 
         @Override
         protected void paintComponent(Graphics g) {
-            super.paintComponent(g);
-
             if (backgroundImage == null) {
+                super.paintComponent(g);
                 return;
             }
 
-            Graphics2D g2d = (Graphics2D) g.create();
+            // The panel grows with the conversation, so the wallpaper covers the visible area instead
+            Container parent = getParent();
+            Dimension extent = parent instanceof JViewport ? ((JViewport) parent).getExtentSize() : getSize();
+            if (extent.width <= 0 || extent.height <= 0) {
+                return;
+            }
+
+            // Only a window resize needs the wallpaper scaled again; scrolling and new bubbles just copy it
+            if (composited == null || composited.getWidth() != extent.width || composited.getHeight() != extent.height) {
+                composited = composite(extent.width, extent.height);
+            }
+            Rectangle visible = getVisibleRect();
+            g.drawImage(composited, visible.x, visible.y, null);
+        }
+
+        private BufferedImage composite(int panelWidth, int panelHeight) {
+            GraphicsConfiguration config = getGraphicsConfiguration();
+            BufferedImage image = config != null
+                ? config.createCompatibleImage(panelWidth, panelHeight, Transparency.OPAQUE)
+                : new BufferedImage(panelWidth, panelHeight, BufferedImage.TYPE_INT_RGB);
+
+            Graphics2D g2d = image.createGraphics();
+            g2d.setColor(getBackground());
+            g2d.fillRect(0, 0, panelWidth, panelHeight);
+
             g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
             g2d.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
             g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
 
-            int panelWidth = getWidth();
-            int panelHeight = getHeight();
-
             // Scale image to cover the panel while maintaining aspect ratio
             int imgWidth = backgroundImage.getWidth(null);
             int imgHeight = backgroundImage.getHeight(null);
@@ -562,6 +711,7 @@ public class ChatPanel extends JPanel {
             g2d.drawImage(backgroundImage, drawX, drawY, drawWidth, drawHeight, null);
 
             g2d.dispose();
+            return image;
         }
     }
 }
@@ -1,9 +1,12 @@
 import javax.swing.*;
 import java.awt.*;
+import java.util.concurrent.CompletableFuture;
 
 
 public class ClashRoyaleDating {
     public static void main(String[] args) {
+        // Decode fonts, images, cards and sounds in parallel while the window comes up
+        CompletableFuture<Void> criticalAssets = StartupWarmup.start();
 
         SwingUtilities.invokeLater(() -> {
             JFrame frame = new JFrame("Clash Royale Dating Simulator");
@@ -11,11 +14,24 @@ public class ClashRoyaleDating {
             frame.setSize(500, 950);
             frame.setLocationRelativeTo(null);
 
-            // Start with profile input
-            frame.add(new ProfileInputPanel(frame));
+            // Show the window straight away in the app's colors until the first screen is ready
+            JPanel placeholder = new JPanel();
+            placeholder.setBackground(new Color(45, 88, 167));
+            frame.add(placeholder);
 
             frame.setVisible(true);
+            StartupWarmup.mark("first-frame");
+
+            criticalAssets.whenComplete((ignored, error) -> SwingUtilities.invokeLater(() -> {
+                // Start with profile input
+                frame.getContentPane().removeAll();
+                frame.add(new ProfileInputPanel(frame));
+                frame.revalidate();
+                frame.repaint();
+
+                // Runs after the panel's first paint has been queued
+                SwingUtilities.invokeLater(() -> StartupWarmup.mark("first-interactive-frame"));
+            }));
         });
     }
 }
-
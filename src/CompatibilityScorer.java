@@ -0,0 +1,16 @@
+/**
+ * The compatibility score shared by CardRanker and CardIndex.
+ * Each component is 100 minus a weighted distance from the user's preference, floored at 0.
+ */
+public class CompatibilityScorer {
+
+    // Points lost per unit of distance for each component
+    static final float HEIGHT_PENALTY = 2.0f;     // per inch
+    static final float RANGE_PENALTY = 25.0f;     // per range level
+    static final float FREE_TIME_PENALTY = 1.0f;  // per percent
+    static final float HUMANNESS_PENALTY = 1.0f;  // per percent
+
+    static float score(float value, float preference, float penalty) {
+        return Math.max(0f, 100f - Math.abs(preference - value) * penalty);
+    }
+}
@@ -0,0 +1,198 @@
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import org.json.JSONObject;
+
+/**
+ * The messages of one conversation, with a token-budgeted window of what is sent each turn.
+ * Once the window outgrows its budget, its oldest turns are folded into a short running memo by a
+ * background summarization request; they stay in the window until the memo covering them is ready.
+ * If summaries fall behind, the window is cut at twice the budget regardless, so the input sent per
+ * turn stays bounded however long the date runs. Every message is still kept for transcripts.
+ * Each message is also serialized once when added, so requests can be assembled from its bytes.
+ */
+public class ConversationHistory {
+
+    /**
+     * Folds older messages into the memo
+     */
+    public interface Summarizer {
+        /**
+         * @param memo the memo so far, or null if there is none yet
+         * @param messages the messages to add to it, oldest first
+         * @return the updated memo
+         */
+        String summarize(String memo, List<JSONObject> messages) throws Exception;
+    }
+
+    public static final int DEFAULT_TOKEN_BUDGET = 1500;
+
+    // Rough characters per token for sizing the window
+    private static final int CHARS_PER_TOKEN = 4;
+    // Role and framing around each message
+    private static final int MESSAGE_OVERHEAD_TOKENS = 4;
+
+    private final int tokenBudget;
+    private final Summarizer summarizer;
+
+    private final List<JSONObject> messages = new ArrayList<>();
+    // UTF-8 JSON of each message in the window; null once a message has left it
+    private final List<byte[]> encoded = new ArrayList<>();
+    private int windowStart = 0;
+    private int windowTokens = 0;
+    private String memo = null;
+    private boolean summarizing = false;
+    // Bumped by clear() so a summary that finishes afterwards is ignored
+    private int generation = 0;
+
+    public ConversationHistory(int tokenBudget, Summarizer summarizer) {
+        this.tokenBudget = tokenBudget;
+        this.summarizer = summarizer;
+    }
+
+    public synchronized void add(String role, String content) {
+        JSONObject message = new JSONObject();
+        message.put("role", role);
+        message.put("content", content);
+        messages.add(message);
+        encoded.add(message.toString().getBytes(StandardCharsets.UTF_8));
+        windowTokens += tokens(message);
+        compact();
+    }
+
+    /**
+     * Takes back the newest message, e.g. after a request that included it failed
+     */
+    public synchronized void removeLast() {
+        if (messages.size() > windowStart) {
+            windowTokens -= tokens(messages.remove(messages.size() - 1));
+            encoded.remove(encoded.size() - 1);
+        }
+    }
+
+    /**
+     * The messages to send with the next request, oldest first; always starts with a user message
+     */
+    public synchronized List<JSONObject> window() {
+        return List.copyOf(messages.subList(windowStart, messages.size()));
+    }
+
+    /**
+     * The window as the UTF-8 JSON of each message, oldest first. This is a live view rather than a copy,
+     * so callers must hold the history's lock while they use it.
+     */
+    public synchronized List<byte[]> encodedWindow() {
+        return Collections.unmodifiableList(encoded.subList(windowStart, encoded.size()));
+    }
+
+    /**
+     * Summary of the messages before the window, or null if nothing has been summarized
+     */
+    public synchronized String memo() {
+        return memo;
+    }
+
+    /**
+     * Every message of the conversation, including those folded into the memo
+     */
+    public synchronized List<JSONObject> all() {
+        return List.copyOf(messages);
+    }
+
+    public synchronized int size() {
+        return messages.size();
+    }
+
+    public synchronized int getWindowTokens() {
+        return windowTokens;
+    }
+
+    public synchronized void clear() {
+        messages.clear();
+        encoded.clear();
+        windowStart = 0;
+        windowTokens = 0;
+        memo = null;
+        summarizing = false;
+        generation++;
+    }
+
+    private void compact() {
+        if (windowTokens <= tokenBudget) {
+            return;
+        }
+
+        if (!summarizing && summarizer != null) {
+            // Summarize enough that the window drops to half the budget, leaving room to grow
+            int cut = cutPoint(tokenBudget / 2);
+            if (cut > windowStart) {
+                List<JSONObject> folded = List.copyOf(messages.subList(windowStart, cut));
+                String previousMemo = memo;
+                int summaryGeneration = generation;
+                summarizing = true;
+                CompletableFuture<String> summary = AppExecutor.supply(AppExecutor.TaskType.CHAT,
+                        () -> summarizer.summarize(previousMemo, folded));
+                summary.whenComplete((text, error) -> finishSummary(summaryGeneration, cut, text, error));
+            }
+        }
+
+        if (windowTokens > tokenBudget * 2) {
+            // Summaries are failing or slow; drop the oldest turns rather than let requests grow
+            System.err.println("Warning: Conversation summary fell behind, dropping older messages");
+            moveWindowStart(cutPoint(tokenBudget));
+        }
+    }
+
+    private synchronized void finishSummary(int summaryGeneration, int end, String text, Throwable error) {
+        if (summaryGeneration != generation) {
+            return;
+        }
+        summarizing = false;
+        if (error != null || text == null || text.isBlank()) {
+            // Keep the messages in the window; the next message retries
+            System.err.println("Warning: Could not summarize conversation: "
+                    + (error != null ? AppExecutor.unwrap(error).getMessage() : "empty summary"));
+            return;
+        }
+        memo = text.trim();
+        moveWindowStart(end);
+        compact();
+    }
+
+    private void moveWindowStart(int index) {
+        while (windowStart < index && windowStart < messages.size()) {
+            encoded.set(windowStart, null);
+            windowTokens -= tokens(messages.get(windowStart++));
+        }
+    }
+
+    /**
+     * Finds the earliest user message from which the rest of the conversation fits in targetTokens.
+     * Falls back to the latest user message, so the newest turn is always kept.
+     */
+    private int cutPoint(int targetTokens) {
+        int fits = -1;
+        int latestUser = -1;
+        int total = 0;
+        for (int i = messages.size() - 1; i >= windowStart; i--) {
+            total += tokens(messages.get(i));
+            boolean user = messages.get(i).getString("role").equals("user");
+            if (user && latestUser < 0) {
+                latestUser = i;
+            }
+            if (user && total <= targetTokens) {
+                fits = i;
+            }
+        }
+        if (fits >= 0) {
+            return fits;
+        }
+        return latestUser >= 0 ? latestUser : windowStart;
+    }
+
+    private static int tokens(JSONObject message) {
+        return message.getString("content").length() / CHARS_PER_TOKEN + MESSAGE_OVERHEAD_TOKENS;
+    }
+}
@@ -0,0 +1,232 @@
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keep-alive transport built on java.net.http.HttpClient.
+ * One client is shared by every chat session, so TLS and connection setup are paid once
+ * and concurrent requests are multiplexed over HTTP/2.
+ * The shared transport's endpoint and key can be overridden with the claude.api.url and
+ * claude.api.key system properties, e.g. to point it at a StubMessagesServer.
+ * Loading this class also sizes the JDK's connection pool and keep-alive through jdk.httpclient.*
+ * system properties. Those are JVM-wide and apply to every HttpClient in the process, so each is
+ * only set when absent and a -D on the command line takes precedence.
+ */
+public class HttpApiTransport implements ApiTransport {
+
+    private static final String DEFAULT_URL = "https://api.anthropic.com/v1/messages";
+    private static final String URL_PROPERTY = "claude.api.url";
+    private static final String KEY_PROPERTY = "claude.api.key";
+    private static final String ANTHROPIC_VERSION = "2023-06-01";
+
+    // Upper bound on requests (and therefore HTTP/1.1 connections) in flight at once
+    private static final int DEFAULT_MAX_IN_FLIGHT = 16;
+
+    // Idle connections are kept this long before the client closes them
+    private static final long KEEP_ALIVE_SECONDS = 300;
+
+    static {
+        // The JDK client reads these once, so they must be set before the first HttpClient is built.
+        // They are process-wide: any other HttpClient in this JVM gets the same pool and keep-alive.
+        setIfAbsent("jdk.httpclient.connectionPoolSize", String.valueOf(DEFAULT_MAX_IN_FLIGHT));
+        setIfAbsent("jdk.httpclient.keepalive.timeout", String.valueOf(KEEP_ALIVE_SECONDS));
+        setIfAbsent("jdk.httpclient.keepalive.timeout.h2", String.valueOf(KEEP_ALIVE_SECONDS));
+    }
+
+    private static HttpApiTransport shared;
+
+    private final HttpClient client;
+    private final URI endpoint;
+    private final String apiKey;
+    private final int maxInFlight;
+    private final Semaphore inFlight;
+
+    // Metrics
+    private final AtomicLong requestCount = new AtomicLong();
+    // HttpClient does not say which connection carried a request, so these split requests by
+    // whether one could have reused a connection, not by whether it did
+    private final AtomicLong warmRequestCount = new AtomicLong();
+    private final AtomicLong coldRequestCount = new AtomicLong();
+    private final AtomicLong totalTimeToFirstByteNanos = new AtomicLong();
+    private final AtomicLong maxTimeToFirstByteNanos = new AtomicLong();
+    private final AtomicLong lastResponseNanos = new AtomicLong();
+    private volatile boolean hasResponded = false;
+
+    public HttpApiTransport(String url, int maxInFlight) {
+        this(url, APIKey.API_KEY, maxInFlight);
+    }
+
+    /**
+     * @param url the messages endpoint, e.g. https://api.anthropic.com/v1/messages
+     */
+    public HttpApiTransport(String url, String apiKey, int maxInFlight) {
+        this.endpoint = URI.create(url);
+        this.apiKey = apiKey;
+        this.maxInFlight = maxInFlight;
+        this.inFlight = new Semaphore(maxInFlight, true);
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+    }
+
+    /**
+     * Gets the transport shared by all simulators
+     */
+    public static synchronized HttpApiTransport shared() {
+        if (shared == null) {
+            shared = new HttpApiTransport(System.getProperty(URL_PROPERTY, DEFAULT_URL),
+                    System.getProperty(KEY_PROPERTY, APIKey.API_KEY), DEFAULT_MAX_IN_FLIGHT);
+        }
+        return shared;
+    }
+
+    @Override
+    public ApiResponse send(String method, String path, RequestBody body) throws IOException, InterruptedException {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(resolve(path))
+                .timeout(Duration.ofSeconds(60))
+                .header("x-api-key", apiKey)
+                .header("anthropic-version", ANTHROPIC_VERSION);
+
+        if (body == null) {
+            builder.method(method, HttpRequest.BodyPublishers.noBody());
+        } else {
+            // Buffered bodies go out in one piece; others are written chunk by chunk as the client asks for data
+            byte[] bytes = body.bytes();
+            HttpRequest.BodyPublisher publisher = bytes != null
+                    ? HttpRequest.BodyPublishers.ofByteArray(bytes, 0, body.length())
+                    : new StreamingBodyPublisher(body);
+            builder.header("Content-Type", "application/json").method(method, publisher);
+        }
+        HttpRequest request = builder.build();
+
+        inFlight.acquire();
+        try {
+            boolean warm = isWarm();
+            long start = System.nanoTime();
+
+            // The body handler runs as soon as the status line and headers arrive
+            HttpResponse<InputStream> response = client.send(request, responseInfo -> {
+                recordTimeToFirstByte(System.nanoTime() - start);
+                return HttpResponse.BodySubscribers.ofInputStream();
+            });
+
+            requestCount.incrementAndGet();
+            if (warm && response.version() == HttpClient.Version.HTTP_2) {
+                warmRequestCount.incrementAndGet();
+            } else {
+                coldRequestCount.incrementAndGet();
+            }
+            hasResponded = true;
+            lastResponseNanos.set(System.nanoTime());
+
+            // The permit is held until the caller finishes with the body
+            return new ApiResponse(response.statusCode(), response.headers().map(), new PermitReleasingStream(response.body()));
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            inFlight.release();
+            throw e;
+        }
+    }
+
+    private URI resolve(String path) {
+        if (path.startsWith("http://") || path.startsWith("https://")) {
+            return URI.create(path);
+        }
+        return path.isEmpty() ? endpoint : URI.create(endpoint + path);
+    }
+
+    /**
+     * Whether an HTTP/2 request sent now finds a connection still inside the keep-alive window.
+     * This is the condition for reuse, not proof of it: the server may have closed the connection.
+     */
+    private boolean isWarm() {
+        if (!hasResponded) {
+            return false;
+        }
+        long idleNanos = System.nanoTime() - lastResponseNanos.get();
+        return idleNanos < Duration.ofSeconds(KEEP_ALIVE_SECONDS).toNanos();
+    }
+
+    private void recordTimeToFirstByte(long nanos) {
+        totalTimeToFirstByteNanos.addAndGet(nanos);
+        maxTimeToFirstByteNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    /**
+     * Returns the in-flight permit exactly once, when the response body is closed
+     */
+    private class PermitReleasingStream extends FilterInputStream {
+        private boolean released = false;
+
+        PermitReleasingStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                synchronized (this) {
+                    if (!released) {
+                        released = true;
+                        inFlight.release();
+                    }
+                }
+            }
+        }
+    }
+
+    private static void setIfAbsent(String property, String value) {
+        if (System.getProperty(property) == null) {
+            System.setProperty(property, value);
+        }
+    }
+
+    public long getRequestCount() {
+        return requestCount.get();
+    }
+
+    /**
+     * HTTP/2 requests sent within the keep-alive window of an earlier response
+     */
+    public long getWarmRequestCount() {
+        return warmRequestCount.get();
+    }
+
+    /**
+     * Requests that were the first, followed an idle gap or went over HTTP/1.1
+     */
+    public long getColdRequestCount() {
+        return coldRequestCount.get();
+    }
+
+    public int getInFlightCount() {
+        return maxInFlight - inFlight.availablePermits();
+    }
+
+    public double getAverageTimeToFirstByteMillis() {
+        long count = requestCount.get();
+        return count == 0 ? 0 : totalTimeToFirstByteNanos.get() / (count * 1_000_000.0);
+    }
+
+    public double getMaxTimeToFirstByteMillis() {
+        return maxTimeToFirstByteNanos.get() / 1_000_000.0;
+    }
+
+    /**
+     * Summarizes the transport counters for logging
+     */
+    public String describeStats() {
+        return String.format("requests=%d warm=%d cold=%d ttfb(avg=%.1fms max=%.1fms)",
+                getRequestCount(), getWarmRequestCount(), getColdRequestCount(),
+                getAverageTimeToFirstByteMillis(), getMaxTimeToFirstByteMillis());
+    }
+}
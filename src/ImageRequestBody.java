@@ -0,0 +1,66 @@
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.UUID;
+import org.json.JSONObject;
+
+/**
+ * Request body for a message containing an image.
+ * The JSON around the image is serialized normally, but the image itself is piped through a
+ * base64 encoder straight into the connection, so the encoded photo never exists as a String.
+ */
+class ImageRequestBody implements ApiTransport.RequestBody {
+    private static final int COPY_BUFFER_SIZE = 8 * 1024;
+
+    private final byte[] prefix;
+    private final byte[] suffix;
+    private final PhotoPreprocessor.PreparedPhoto photo;
+
+    /**
+     * @param requestBody the full request, with imageSource standing in for the image's source object
+     * @param imageSource the source object inside requestBody; its "data" field is filled in while writing
+     */
+    ImageRequestBody(JSONObject requestBody, JSONObject imageSource, PhotoPreprocessor.PreparedPhoto photo) {
+        this.photo = photo;
+
+        // Serialize once with a marker where the base64 data goes, then split around it
+        String marker = "image-data-" + UUID.randomUUID();
+        imageSource.put("data", marker);
+        String envelope = requestBody.toString();
+        imageSource.remove("data");
+
+        int split = envelope.indexOf(marker);
+        this.prefix = envelope.substring(0, split).getBytes(StandardCharsets.UTF_8);
+        this.suffix = envelope.substring(split + marker.length()).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void writeTo(OutputStream out) throws IOException {
+        out.write(prefix);
+
+        // Closing the encoder writes the final padding but must not close the connection stream
+        try (InputStream in = photo.openStream();
+             OutputStream base64 = Base64.getEncoder().wrap(new FilterOutputStream(out) {
+                 @Override
+                 public void write(byte[] bytes, int offset, int length) throws IOException {
+                     out.write(bytes, offset, length);
+                 }
+
+                 @Override
+                 public void close() throws IOException {
+                     flush();
+                 }
+             })) {
+            byte[] buffer = new byte[COPY_BUFFER_SIZE];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                base64.write(buffer, 0, read);
+            }
+        }
+
+        out.write(suffix);
+    }
+}
@@ -0,0 +1,243 @@
+import javax.imageio.IIOException;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Shrinks the user's profile photo before it is sent to Claude.
+ * The photo is decoded once, its long edge is capped and it is re-encoded as JPEG.
+ * Results are memoized by file path and modification time, and a photo already being prepared is not prepared twice.
+ */
+public class PhotoPreprocessor {
+
+    // Claude downsizes anything larger than this on its side, so extra pixels are wasted upload
+    private static final int DEFAULT_MAX_EDGE = 1568;
+    private static final float DEFAULT_JPEG_QUALITY = 0.85f;
+    private static final int MAX_CACHED_PHOTOS = 4;
+
+    private static volatile int maxEdge = DEFAULT_MAX_EDGE;
+    private static volatile float jpegQuality = DEFAULT_JPEG_QUALITY;
+
+    private static final Map<String, PreparedPhoto> cache = new LinkedHashMap<>(8, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, PreparedPhoto> eldest) {
+            return size() > MAX_CACHED_PHOTOS;
+        }
+    };
+
+    // Photos being encoded right now, so a prepare that arrives mid-encode waits for it
+    private static final Map<String, CompletableFuture<PreparedPhoto>> preparing = new ConcurrentHashMap<>();
+
+    /**
+     * Encoded photo ready to upload: either the re-encoded bytes or the untouched original file
+     */
+    public static class PreparedPhoto {
+        public final String mediaType;
+        private final byte[] bytes;
+        private final File original;
+
+        PreparedPhoto(byte[] bytes, String mediaType) {
+            this.bytes = bytes;
+            this.original = null;
+            this.mediaType = mediaType;
+        }
+
+        PreparedPhoto(File original, String mediaType) {
+            this.bytes = null;
+            this.original = original;
+            this.mediaType = mediaType;
+        }
+
+        /**
+         * Opens the photo bytes for streaming into a request
+         */
+        public InputStream openStream() throws IOException {
+            return bytes != null ? new ByteArrayInputStream(bytes) : new FileInputStream(original);
+        }
+
+        public long length() {
+            return bytes != null ? bytes.length : original.length();
+        }
+    }
+
+    /**
+     * Sets the longest allowed edge in pixels
+     */
+    public static void setMaxEdge(int pixels) {
+        maxEdge = pixels;
+    }
+
+    /**
+     * Sets the JPEG quality from 0.0 to 1.0
+     */
+    public static void setJpegQuality(float quality) {
+        jpegQuality = quality;
+    }
+
+    /**
+     * Gets the upload-ready version of a photo, preparing it on first use
+     */
+    public static PreparedPhoto prepare(String imagePath) throws IOException {
+        File file = new File(imagePath);
+        String key = file.getAbsolutePath() + "|" + file.lastModified() + "|" + maxEdge + "|" + jpegQuality;
+
+        PreparedPhoto cached = getCached(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        CompletableFuture<PreparedPhoto> encoding = new CompletableFuture<>();
+        CompletableFuture<PreparedPhoto> future = preparing.computeIfAbsent(key, k -> encoding);
+        if (future == encoding) {
+            try {
+                // Another encode of this key may have finished since the cache was checked
+                PreparedPhoto prepared = getCached(key);
+                if (prepared == null) {
+                    prepared = encode(file);
+                    synchronized (cache) {
+                        cache.put(key, prepared);
+                    }
+                }
+                encoding.complete(prepared);
+            } catch (IOException | RuntimeException | Error e) {
+                encoding.completeExceptionally(e);
+                throw e;
+            } finally {
+                preparing.remove(key, encoding);
+            }
+        }
+
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private static PreparedPhoto getCached(String key) {
+        synchronized (cache) {
+            return cache.get(key);
+        }
+    }
+
+    /**
+     * Starts preparing a photo in the background so the greeting does not wait for it
+     */
+    public static void prepareAsync(String imagePath) {
+        AppExecutor.run(AppExecutor.TaskType.IMAGE, () -> {
+            try {
+                prepare(imagePath);
+            } catch (IOException e) {
+                System.err.println("Could not preprocess photo: " + imagePath);
+            }
+        });
+    }
+
+    private static PreparedPhoto encode(File file) throws IOException {
+        String originalType = getMediaType(file.getName());
+
+        BufferedImage image;
+        try {
+            image = ImageIO.read(file);
+        } catch (IIOException e) {
+            if (!file.canRead()) {
+                throw e;
+            }
+            // A variant the decoder rejects, such as a CMYK JPEG - upload it untouched
+            return new PreparedPhoto(file, originalType);
+        }
+        if (image == null) {
+            // No decoder for this format - upload it untouched
+            return new PreparedPhoto(file, originalType);
+        }
+
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int longEdge = Math.max(width, height);
+        if (longEdge > maxEdge) {
+            double scale = maxEdge / (double) longEdge;
+            width = Math.max(1, (int) Math.round(width * scale));
+            height = Math.max(1, (int) Math.round(height * scale));
+        }
+
+        byte[] jpeg = writeJpeg(scale(image, width, height));
+
+        // Small photos can already be smaller than the re-encoded copy
+        if (longEdge <= maxEdge && file.length() <= jpeg.length) {
+            return new PreparedPhoto(file, originalType);
+        }
+        return new PreparedPhoto(jpeg, "image/jpeg");
+    }
+
+    /**
+     * Scales down in halving steps so bilinear filtering does not alias, flattening any transparency onto white
+     */
+    private static BufferedImage scale(BufferedImage source, int targetWidth, int targetHeight) {
+        BufferedImage current = source;
+        int width = source.getWidth();
+        int height = source.getHeight();
+
+        do {
+            width = Math.max(targetWidth, width / 2);
+            height = Math.max(targetHeight, height / 2);
+
+            BufferedImage step = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            Graphics2D g2d = step.createGraphics();
+            g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g2d.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g2d.setColor(Color.WHITE);
+            g2d.fillRect(0, 0, width, height);
+            g2d.drawImage(current, 0, 0, width, height, null);
+            g2d.dispose();
+            current = step;
+        } while (width != targetWidth || height != targetHeight);
+
+        return current;
+    }
+
+    private static byte[] writeJpeg(BufferedImage image) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+        param.setCompressionQuality(jpegQuality);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ImageOutputStream imageOut = ImageIO.createImageOutputStream(out)) {
+            writer.setOutput(imageOut);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Gets media type from file extension
+     */
+    public static String getMediaType(String imagePath) {
+        String lower = imagePath.toLowerCase();
+        if (lower.endsWith(".png")) return "image/png";
+        if (lower.endsWith(".jpg") || lower.endsWith(".jpeg")) return "image/jpeg";
+        if (lower.endsWith(".gif")) return "image/gif";
+        if (lower.endsWith(".webp")) return "image/webp";
+        return "image/jpeg"; // default
+    }
+}
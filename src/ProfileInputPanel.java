@@ -3,8 +3,6 @@ import javax.swing.border.AbstractBorder;
 import java.awt.*;
 import java.awt.geom.RoundRectangle2D;
 import java.io.File;
-import java.io.IOException;
-import javax.imageio.ImageIO;
 
 class ProfileInputPanel extends JPanel {
     private JTextField nameField;
@@ -14,6 +12,7 @@ class ProfileInputPanel extends JPanel {
     private JButton continueButton;
     private Image logoImage;
     private java.util.List<Image> backgroundImages;
+    private final BackgroundRenderer background = new BackgroundRenderer(this::paintBackground);
     private Image kingImage;
 
     // New fields
@@ -46,37 +45,34 @@ class ProfileInputPanel extends JPanel {
     private static final Color CLASH_GOLD = new Color(255, 183, 77);
     private static final Color CARD_BG = new Color(255, 255, 255, 240);
 
+    private static final String LOGO_IMAGE = "/resources/main_logo_clashroyale.5e3fbb70__1_.webp";
+    private static final String KING_IMAGE = "/resources/tutorial.png";
+    private static final String[] BACKGROUND_IMAGES = {
+        "/resources/6f9b3f2201c9af83c69aeb604f64e25d.jpg",
+        "/resources/clash-royale_nten.jpg",
+        "/resources/in-a-realistic-sense-if-all-the-troops-from-clash-royale-v0-jlghikjobhpf1.png.webp",
+        "/resources/explained-when-did-clash-royale-come-out-release-date-history.jpg",
+        "/resources/clashroyale-1653673820137.jpg.webp"
+    };
+
+    /**
+     * Decodes this screen's images ahead of time so constructing the panel does not touch the disk
+     */
+    public static void preloadAssets() {
+        AssetRegistry.image(LOGO_IMAGE);
+        AssetRegistry.image(KING_IMAGE);
+        AssetRegistry.images(BACKGROUND_IMAGES);
+    }
+
     public ProfileInputPanel(JFrame parent) {
         setLayout(new BorderLayout(0, 0));
 
-        // Load images
-        backgroundImages = new java.util.ArrayList<>();
-        try {
-            logoImage = ImageIO.read(getClass().getResourceAsStream("/resources/main_logo_clashroyale.5e3fbb70__1_.webp"));
-            kingImage = ImageIO.read(getClass().getResourceAsStream("/resources/tutorial.png"));
-
-            // Load all character/background images
-            String[] imageFiles = {
-                "/resources/6f9b3f2201c9af83c69aeb604f64e25d.jpg",
-                "/resources/clash-royale_nten.jpg",
-                "/resources/in-a-realistic-sense-if-all-the-troops-from-clash-royale-v0-jlghikjobhpf1.png.webp",
-                "/resources/explained-when-did-clash-royale-come-out-release-date-history.jpg",
-                "/resources/clashroyale-1653673820137.jpg.webp"
-            };
+        // Images are shared across panels, so a restart does not decode them again
+        logoImage = AssetRegistry.image(LOGO_IMAGE);
+        kingImage = AssetRegistry.image(KING_IMAGE);
 
-            for (String imagePath : imageFiles) {
-                try {
-                    Image img = ImageIO.read(getClass().getResourceAsStream(imagePath));
-                    if (img != null) {
-                        backgroundImages.add(img);
-                    }
-                } catch (Exception e) {
-                    System.err.println("Could not load: " + imagePath);
-                }
-            }
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+        // Load all character/background images
+        backgroundImages = AssetRegistry.images(BACKGROUND_IMAGES);
 
         // Logo at the top
         JPanel logoPanel = new JPanel();
@@ -197,6 +193,7 @@ class ProfileInputPanel extends JPanel {
         add(mainScrollPane, BorderLayout.CENTER);
 
         // Initialize first question
+        AudioPlayer.preloadDialogue();
         showQuestion(0);
     }
 
@@ -443,13 +440,16 @@ class ProfileInputPanel extends JPanel {
     @Override
     protected void paintComponent(Graphics g) {
         super.paintComponent(g);
-        Graphics2D g2d = (Graphics2D) g;
+        background.paint(g, this);
+    }
+
+    /**
+     * Paints the static background; BackgroundRenderer caches the result until the panel is resized
+     */
+    private void paintBackground(Graphics2D g2d, int width, int height) {
         g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
         g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
 
-        int width = getWidth();
-        int height = getHeight();
-
         // Draw gradient background
         GradientPaint gradient = new GradientPaint(0, 0, CLASH_BLUE, 0, height, CLASH_DARK_BLUE);
         g2d.setPaint(gradient);
@@ -527,6 +527,9 @@ class ProfileInputPanel extends JPanel {
 
         if (fileChooser.showOpenDialog(this) == JFileChooser.APPROVE_OPTION) {
             selectedImage = fileChooser.getSelectedFile();
+
+            // Shrink the photo now so the greeting request does not wait on it later
+            PhotoPreprocessor.prepareAsync(selectedImage.getAbsolutePath());
             if (imageLabel != null) {
                 ImageIcon icon = new ImageIcon(selectedImage.getAbsolutePath());
                 Image scaled = icon.getImage().getScaledInstance(150, 150, Image.SCALE_SMOOTH);
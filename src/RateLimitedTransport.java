@@ -0,0 +1,117 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import org.json.JSONObject;
+
+/**
+ * Charges requests against a RateLimiter as they are actually sent. It sits below
+ * ResilientTransport, so every retry and hedged duplicate waits for and pays its own share of the
+ * budget instead of slipping past it. Only bodies wrapped with charged() are charged; batch
+ * submissions and polls have their own limits and pass straight through.
+ * The API reports the account's limits with each response, and those replace the configured ones.
+ */
+public class RateLimitedTransport implements ApiTransport {
+
+    private static final String REQUESTS_LIMIT = "anthropic-ratelimit-requests-limit";
+    private static final String INPUT_TOKENS_LIMIT = "anthropic-ratelimit-input-tokens-limit";
+    private static final String OUTPUT_TOKENS_LIMIT = "anthropic-ratelimit-output-tokens-limit";
+
+    private final ApiTransport delegate;
+    private final RateLimiter limiter;
+
+    public RateLimitedTransport(ApiTransport delegate, RateLimiter limiter) {
+        this.delegate = delegate;
+        this.limiter = limiter;
+    }
+
+    /**
+     * Tags a request body with what each attempt to send it should be charged
+     * @param estimatedInputTokens a guess at the prompt size; corrected by ApiResponse.settle
+     * @param maxOutputTokens the request's max_tokens
+     */
+    public static RequestBody charged(RequestBody body, RateLimiter.Priority priority,
+                                      long estimatedInputTokens, long maxOutputTokens) {
+        return new Charged(body, priority, estimatedInputTokens, maxOutputTokens);
+    }
+
+    @Override
+    public ApiResponse send(String method, String path, RequestBody body) throws IOException, InterruptedException {
+        if (!(body instanceof Charged)) {
+            ApiResponse response = delegate.send(method, path, body);
+            learnLimits(response);
+            return response;
+        }
+
+        Charged charged = (Charged) body;
+        RateLimiter.Permit permit = limiter.acquire(charged.priority, charged.estimatedInputTokens, charged.maxOutputTokens);
+        ApiResponse response;
+        try {
+            response = delegate.send(method, path, charged.body);
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            permit.refund();
+            throw e;
+        }
+        learnLimits(response);
+
+        if (response.statusCode != 200) {
+            // Rejected requests use no tokens
+            permit.refund();
+            return response;
+        }
+        return new ApiResponse(response.statusCode, response.headers, response.body) {
+            @Override
+            public void settle(JSONObject usage) {
+                permit.settle(usage);
+            }
+        };
+    }
+
+    private void learnLimits(ApiResponse response) {
+        long requests = headerLong(response, REQUESTS_LIMIT);
+        long inputTokens = headerLong(response, INPUT_TOKENS_LIMIT);
+        long outputTokens = headerLong(response, OUTPUT_TOKENS_LIMIT);
+        if (requests > 0 || inputTokens > 0 || outputTokens > 0) {
+            limiter.updateLimits(requests, inputTokens, outputTokens);
+        }
+    }
+
+    private static long headerLong(ApiResponse response, String name) {
+        String value = response.header(name);
+        if (value == null) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static class Charged implements RequestBody {
+        final RequestBody body;
+        final RateLimiter.Priority priority;
+        final long estimatedInputTokens;
+        final long maxOutputTokens;
+
+        Charged(RequestBody body, RateLimiter.Priority priority, long estimatedInputTokens, long maxOutputTokens) {
+            this.body = body;
+            this.priority = priority;
+            this.estimatedInputTokens = estimatedInputTokens;
+            this.maxOutputTokens = maxOutputTokens;
+        }
+
+        @Override
+        public void writeTo(OutputStream out) throws IOException {
+            body.writeTo(out);
+        }
+
+        @Override
+        public byte[] bytes() {
+            return body.bytes();
+        }
+
+        @Override
+        public int length() {
+            return body.length();
+        }
+    }
+}
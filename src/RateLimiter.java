@@ -0,0 +1,286 @@
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import org.json.JSONObject;
+
+/**
+ * Process-wide token buckets for requests, input tokens and output tokens per minute, shared by
+ * every conversation so that many open chats slow down together instead of all hitting 429s at once.
+ * A request is charged its estimated input and its max_tokens up front; once the response reports
+ * real usage the difference is paid back (or charged) so later requests are not held up by estimates.
+ * Interactive requests go first: background work waits while any are queued and may not spend the
+ * last part of a bucket.
+ * The shared limiter starts from the claude.ratelimit.requests, claude.ratelimit.input-tokens and
+ * claude.ratelimit.output-tokens system properties (per minute), or the entry-tier limits, and
+ * RateLimitedTransport corrects them from the limits the API reports with each response.
+ */
+public class RateLimiter {
+
+    public enum Priority {
+        // The user is waiting on it: replies, greetings, the ask-out
+        INTERACTIVE,
+        // Scoring and evaluation
+        BACKGROUND
+    }
+
+    // Defaults are the API's entry-tier limits for Haiku; raise them with setLimits for higher tiers
+    private static final int DEFAULT_REQUESTS_PER_MINUTE = 50;
+    private static final long DEFAULT_INPUT_TOKENS_PER_MINUTE = 50_000;
+    private static final long DEFAULT_OUTPUT_TOKENS_PER_MINUTE = 10_000;
+
+    // Share of each bucket that only interactive requests may spend
+    private static final double INTERACTIVE_RESERVE = 0.2;
+
+    private static final RateLimiter shared = new RateLimiter(
+            Integer.getInteger("claude.ratelimit.requests", DEFAULT_REQUESTS_PER_MINUTE),
+            Long.getLong("claude.ratelimit.input-tokens", DEFAULT_INPUT_TOKENS_PER_MINUTE),
+            Long.getLong("claude.ratelimit.output-tokens", DEFAULT_OUTPUT_TOKENS_PER_MINUTE));
+
+    // Virtual threads wait here, so a lock rather than synchronized keeps them from pinning carriers
+    private final ReentrantLock lock = new ReentrantLock(true);
+    private final Condition changed = lock.newCondition();
+
+    private Bucket requests;
+    private Bucket inputTokens;
+    private Bucket outputTokens;
+    private int interactiveWaiting = 0;
+
+    // Metrics
+    private final AtomicLong[] acquiredCount = {new AtomicLong(), new AtomicLong()};
+    private final AtomicLong[] totalWaitNanos = {new AtomicLong(), new AtomicLong()};
+    private final AtomicLong[] maxWaitNanos = {new AtomicLong(), new AtomicLong()};
+
+    public RateLimiter(int requestsPerMinute, long inputTokensPerMinute, long outputTokensPerMinute) {
+        requests = new Bucket(requestsPerMinute);
+        inputTokens = new Bucket(inputTokensPerMinute);
+        outputTokens = new Bucket(outputTokensPerMinute);
+    }
+
+    public static RateLimiter shared() {
+        return shared;
+    }
+
+    /**
+     * Changes the per-minute budgets. Buckets start full at the new limits.
+     */
+    public void setLimits(int requestsPerMinute, long inputTokensPerMinute, long outputTokensPerMinute) {
+        lock.lock();
+        try {
+            requests = new Bucket(requestsPerMinute);
+            inputTokens = new Bucket(inputTokensPerMinute);
+            outputTokens = new Bucket(outputTokensPerMinute);
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Adopts new per-minute budgets, such as those the API reports, without refilling the buckets:
+     * what has been spent stays spent. Values of 0 or less leave that budget as it is.
+     */
+    public void updateLimits(long requestsPerMinute, long inputTokensPerMinute, long outputTokensPerMinute) {
+        lock.lock();
+        try {
+            long now = System.nanoTime();
+            boolean resized = requests.resize(requestsPerMinute, now);
+            resized |= inputTokens.resize(inputTokensPerMinute, now);
+            resized |= outputTokens.resize(outputTokensPerMinute, now);
+            if (resized) {
+                changed.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits until the request fits in every bucket and charges it
+     * @param estimatedInputTokens a guess at the prompt size; corrected by Permit.settle
+     * @param maxOutputTokens the request's max_tokens
+     */
+    public Permit acquire(Priority priority, long estimatedInputTokens, long maxOutputTokens) throws InterruptedException {
+        long start = System.nanoTime();
+        lock.lock();
+        try {
+            boolean interactive = priority == Priority.INTERACTIVE;
+            double reserve = interactive ? 0 : INTERACTIVE_RESERVE;
+            if (interactive) {
+                interactiveWaiting++;
+            }
+            try {
+                while (true) {
+                    if (!interactive && interactiveWaiting > 0) {
+                        // Interactive requests signal when they get through
+                        changed.await();
+                        continue;
+                    }
+                    long now = System.nanoTime();
+                    long wait = Math.max(requests.waitNanos(1, reserve, now),
+                            Math.max(inputTokens.waitNanos(estimatedInputTokens, reserve, now),
+                                    outputTokens.waitNanos(maxOutputTokens, reserve, now)));
+                    if (wait == 0) {
+                        requests.take(1);
+                        inputTokens.take(estimatedInputTokens);
+                        outputTokens.take(maxOutputTokens);
+                        break;
+                    }
+                    changed.awaitNanos(wait);
+                }
+            } finally {
+                if (interactive) {
+                    interactiveWaiting--;
+                    changed.signalAll();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        long waited = System.nanoTime() - start;
+        acquiredCount[priority.ordinal()].incrementAndGet();
+        totalWaitNanos[priority.ordinal()].addAndGet(waited);
+        maxWaitNanos[priority.ordinal()].accumulateAndGet(waited, Math::max);
+        return new Permit(estimatedInputTokens, maxOutputTokens);
+    }
+
+    /**
+     * A granted request. Settling it with the response's usage corrects the charged estimates.
+     */
+    public class Permit {
+        private final long estimatedInputTokens;
+        private final long maxOutputTokens;
+        private boolean settled = false;
+
+        private Permit(long estimatedInputTokens, long maxOutputTokens) {
+            this.estimatedInputTokens = estimatedInputTokens;
+            this.maxOutputTokens = maxOutputTokens;
+        }
+
+        /**
+         * Replaces the estimates with the real counts from a usage object.
+         * Cache reads do not count toward the input limit, cache writes do.
+         * Does nothing if usage is null, e.g. when the request failed, so the estimate stays charged.
+         */
+        public void settle(JSONObject usage) {
+            if (usage == null || settled) {
+                return;
+            }
+            settled = true;
+            long actualInput = usage.optLong("input_tokens", 0) + usage.optLong("cache_creation_input_tokens", 0);
+            long actualOutput = usage.optLong("output_tokens", 0);
+            give(estimatedInputTokens - actualInput, maxOutputTokens - actualOutput);
+        }
+
+        /**
+         * Pays back the token charge of a request the API did not process, e.g. one that failed with 429 or 529.
+         * The request itself still counts against the request budget.
+         */
+        public void refund() {
+            if (settled) {
+                return;
+            }
+            settled = true;
+            give(estimatedInputTokens, maxOutputTokens);
+        }
+
+        private void give(long input, long output) {
+            lock.lock();
+            try {
+                inputTokens.give(input);
+                outputTokens.give(output);
+                changed.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    public long getAcquiredCount(Priority priority) {
+        return acquiredCount[priority.ordinal()].get();
+    }
+
+    public double getAverageWaitMillis(Priority priority) {
+        long count = getAcquiredCount(priority);
+        return count == 0 ? 0 : totalWaitNanos[priority.ordinal()].get() / (count * 1_000_000.0);
+    }
+
+    public double getMaxWaitMillis(Priority priority) {
+        return maxWaitNanos[priority.ordinal()].get() / 1_000_000.0;
+    }
+
+    public String describe() {
+        StringBuilder stats = new StringBuilder();
+        for (Priority priority : Priority.values()) {
+            stats.append(String.format("%s(n=%d wait avg=%.1fms max=%.1fms) ", priority.name().toLowerCase(),
+                    getAcquiredCount(priority), getAverageWaitMillis(priority), getMaxWaitMillis(priority)));
+        }
+        lock.lock();
+        try {
+            long now = System.nanoTime();
+            stats.append(String.format("available(requests=%.0f input=%.0f output=%.0f)",
+                    requests.level(now), inputTokens.level(now), outputTokens.level(now)));
+        } finally {
+            lock.unlock();
+        }
+        return stats.toString();
+    }
+
+    /**
+     * Refills continuously at capacity per minute. The level may go negative when a response
+     * used more than was charged, which makes the next requests wait correspondingly longer.
+     */
+    private static class Bucket {
+        private double capacity;
+        private double perNano;
+        private double level;
+        private long lastRefill;
+
+        Bucket(long perMinute) {
+            this.capacity = Math.max(1, perMinute);
+            this.perNano = capacity / TimeUnit.MINUTES.toNanos(1);
+            this.level = capacity;
+            this.lastRefill = System.nanoTime();
+        }
+
+        /**
+         * Changes the capacity, keeping the amount spent so far
+         * @return whether anything changed
+         */
+        boolean resize(long perMinute, long now) {
+            if (perMinute <= 0 || perMinute == capacity) {
+                return false;
+            }
+            level(now);
+            level += perMinute - capacity;
+            capacity = perMinute;
+            perNano = capacity / TimeUnit.MINUTES.toNanos(1);
+            return true;
+        }
+
+        double level(long now) {
+            level = Math.min(capacity, level + (now - lastRefill) * perNano);
+            lastRefill = now;
+            return level;
+        }
+
+        /**
+         * How long until amount can be taken while leaving the reserve untouched, or 0 if it can now.
+         * Requests bigger than the bucket wait for a full bucket rather than forever.
+         */
+        long waitNanos(double amount, double reserveFraction, long now) {
+            double needed = Math.min(capacity, amount + capacity * reserveFraction);
+            double missing = needed - level(now);
+            return missing <= 0 ? 0 : Math.max(1, (long) Math.ceil(missing / perNano));
+        }
+
+        void take(double amount) {
+            level -= amount;
+        }
+
+        void give(double amount) {
+            level = Math.min(capacity, level + amount);
+        }
+    }
+}
@@ -0,0 +1,182 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Assembles a messages request from parts that were serialized once: the fields that come before
+ * "messages", and the JSON of each message as ConversationHistory stored it when it was added.
+ * The parts are copied into a reused buffer that is written straight to the connection, so a turn
+ * no longer re-serializes the whole transcript and allocates about the same however long the date runs.
+ */
+class RequestEncoder {
+
+    private static final byte[] MESSAGES_FIELD = ",\"messages\":[".getBytes(StandardCharsets.UTF_8);
+    private static final int MIN_BUFFER_SIZE = 8192;
+
+    // The idle buffer, if any; requests built while it is taken get a buffer of their own
+    private static final AtomicReference<byte[]> spare = new AtomicReference<>();
+
+    private RequestEncoder() {
+    }
+
+    /**
+     * Serializes the fields before the messages, leaving the messages array open
+     */
+    static byte[] head(JSONObject fields) {
+        String json = fields.toString();
+        byte[] start = json.substring(0, json.lastIndexOf('}')).getBytes(StandardCharsets.UTF_8);
+        byte[] head = new byte[start.length + MESSAGES_FIELD.length];
+        System.arraycopy(start, 0, head, 0, start.length);
+        System.arraycopy(MESSAGES_FIELD, 0, head, start.length, MESSAGES_FIELD.length);
+        return head;
+    }
+
+    /**
+     * Builds a request body
+     * @param head from head()
+     * @param messages the encoded messages, oldest first
+     * @param extraMessage an encoded message to append, such as a prefill, or null
+     */
+    static Body encode(byte[] head, List<byte[]> messages, byte[] extraMessage) {
+        int length = head.length + 2;
+        for (byte[] message : messages) {
+            length += message.length + 1;
+        }
+        if (extraMessage != null) {
+            length += extraMessage.length + 1;
+        }
+
+        byte[] buffer = spare.getAndSet(null);
+        if (buffer == null || buffer.length < length) {
+            // Round up so a growing conversation settles on one buffer
+            buffer = new byte[Math.max(MIN_BUFFER_SIZE, Integer.highestOneBit(length - 1) << 1)];
+        }
+
+        int position = put(buffer, 0, head);
+        boolean first = true;
+        for (byte[] message : messages) {
+            if (!first) {
+                buffer[position++] = ',';
+            }
+            position = put(buffer, position, message);
+            first = false;
+        }
+        if (extraMessage != null) {
+            if (!first) {
+                buffer[position++] = ',';
+            }
+            position = put(buffer, position, extraMessage);
+        }
+        buffer[position++] = ']';
+        buffer[position++] = '}';
+        return new Body(buffer, position);
+    }
+
+    private static int put(byte[] buffer, int position, byte[] part) {
+        System.arraycopy(part, 0, buffer, position, part.length);
+        return position + part.length;
+    }
+
+    /**
+     * A request held in a pooled buffer. Release it once the response has been read,
+     * after which it must not be sent again.
+     */
+    static class Body implements ApiTransport.RequestBody {
+        private byte[] buffer;
+        private final int length;
+
+        private Body(byte[] buffer, int length) {
+            this.buffer = buffer;
+            this.length = length;
+        }
+
+        @Override
+        public void writeTo(OutputStream out) throws IOException {
+            out.write(buffer, 0, length);
+        }
+
+        @Override
+        public byte[] bytes() {
+            return buffer;
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        void release() {
+            if (buffer != null) {
+                spare.set(buffer);
+                buffer = null;
+            }
+        }
+    }
+
+    /**
+     * Compares the bytes allocated per turn by re-serializing the whole request against this encoder,
+     * at 3, 30 and 300 turns. Each turn adds a message, builds the request and takes the message back.
+     */
+    public static void main(String[] args) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        String text = "Ha! You think a Hog Rider rush beats a well-timed Cannon? Tell me about your best clan war, "
+                + "and I'll tell you about the day I held the King's Tower alone with two elixir.";
+        String persona = text.repeat(20);
+
+        JSONObject fields = new JSONObject();
+        fields.put("model", "claude-haiku-4-5-20251001");
+        fields.put("max_tokens", 500);
+        fields.put("system", new JSONArray().put(new JSONObject().put("type", "text").put("text", persona)));
+        byte[] head = head(fields);
+
+        for (int turns : new int[]{3, 30, 300}) {
+            ConversationHistory history = new ConversationHistory(Integer.MAX_VALUE, null);
+            for (int i = 0; i < turns - 1; i++) {
+                history.add(i % 2 == 0 ? "user" : "assistant", text);
+            }
+
+            long sink = 0;
+            long[] allocated = new long[2];
+            // Two passes; the first warms up the JIT and is discarded
+            for (int pass = 0; pass < 2; pass++) {
+                long start = threads.getCurrentThreadAllocatedBytes();
+                for (int i = 0; i < iterations; i++) {
+                    history.add("user", text);
+                    JSONObject request = new JSONObject();
+                    request.put("model", "claude-haiku-4-5-20251001");
+                    request.put("max_tokens", 500);
+                    request.put("system", new JSONArray().put(new JSONObject().put("type", "text").put("text", persona)));
+                    JSONArray messages = new JSONArray();
+                    for (JSONObject message : history.window()) {
+                        messages.put(message);
+                    }
+                    request.put("messages", messages);
+                    sink += request.toString().getBytes(StandardCharsets.UTF_8).length;
+                    history.removeLast();
+                }
+                long middle = threads.getCurrentThreadAllocatedBytes();
+                for (int i = 0; i < iterations; i++) {
+                    history.add("user", text);
+                    Body body;
+                    synchronized (history) {
+                        body = encode(head, history.encodedWindow(), null);
+                    }
+                    sink += body.length();
+                    body.release();
+                    history.removeLast();
+                }
+                long end = threads.getCurrentThreadAllocatedBytes();
+                allocated[0] = (middle - start) / iterations;
+                allocated[1] = (end - middle) / iterations;
+            }
+            System.out.printf("%3d turns: re-serialize %,9d B/turn, incremental %,7d B/turn (%d)%n",
+                    turns, allocated[0], allocated[1], sink % 10);
+        }
+    }
+}
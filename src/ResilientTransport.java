@@ -0,0 +1,405 @@
+import java.io.IOException;
+import java.net.http.HttpTimeoutException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Wraps another transport with retries, a circuit breaker per endpoint and hedged requests.
+ * Overloaded (429/529), server error and connection failures are retried with jittered exponential
+ * backoff, waiting as long as the server's retry-after asks. Only requests that are safe to send
+ * twice are retried that way; others are only retried when rate limited, since the server never
+ * processed them. After repeated failures an endpoint's breaker opens and requests fail fast until
+ * a probe gets through. Hedged posts send a duplicate once the first attempt is slower than the
+ * usual p95, and use whichever answers first.
+ */
+public class ResilientTransport implements ApiTransport {
+
+    private static final int MAX_ATTEMPTS = 4;
+    private static final long BASE_BACKOFF_MILLIS = 500;
+    private static final long MAX_BACKOFF_MILLIS = 16_000;
+    // Longer waits than this are not worth blocking a chat for; the error is returned instead
+    private static final long MAX_RETRY_AFTER_MILLIS = 60_000;
+    // No retry starts once this long has passed since the first attempt
+    private static final long MAX_RETRY_MILLIS = 60_000;
+
+    private static final int BREAKER_FAILURE_THRESHOLD = 5;
+    private static final long BREAKER_OPEN_MILLIS = 30_000;
+
+    // The hedge delay is the p95 of the last LATENCY_SAMPLES hedged requests
+    private static final int LATENCY_SAMPLES = 100;
+    private static final int MIN_LATENCY_SAMPLES = 10;
+    private static final long DEFAULT_HEDGE_DELAY_MILLIS = 4_000;
+    // Never hedge sooner than this, however fast recent requests were
+    private static final long MIN_HEDGE_DELAY_MILLIS = 500;
+
+    private static ResilientTransport shared;
+
+    private final ApiTransport delegate;
+    private final Map<String, CircuitBreaker> breakers = new ConcurrentHashMap<>();
+
+    private final long[] latencies = new long[LATENCY_SAMPLES];
+    private int latencyCount = 0;
+
+    // Metrics
+    private final AtomicLong retryCount = new AtomicLong();
+    private final AtomicLong hedgeCount = new AtomicLong();
+    private final AtomicLong hedgeWinCount = new AtomicLong();
+    private final AtomicLong rejectedCount = new AtomicLong();
+
+    /**
+     * Thrown instead of sending while an endpoint's circuit breaker is open
+     */
+    public static class CircuitOpenException extends IOException {
+        CircuitOpenException(String endpoint, long retryInMillis) {
+            super("API endpoint '" + endpoint + "' is failing; not retrying for another " + (retryInMillis / 1000 + 1) + "s");
+        }
+    }
+
+    public ResilientTransport(ApiTransport delegate) {
+        this.delegate = delegate;
+    }
+
+    /**
+     * Gets the resilient wrapper around the shared HTTP transport. The shared rate limiter sits
+     * between them, so each retry and hedge is charged.
+     */
+    public static synchronized ResilientTransport shared() {
+        if (shared == null) {
+            shared = new ResilientTransport(new RateLimitedTransport(HttpApiTransport.shared(), RateLimiter.shared()));
+        }
+        return shared;
+    }
+
+    @Override
+    public ApiResponse send(String method, String path, RequestBody body) throws IOException, InterruptedException {
+        return send(method, path, body, null);
+    }
+
+    /**
+     * @param failed set when an attempt fails and is retried, or null if no one is watching
+     */
+    private ApiResponse send(String method, String path, RequestBody body, AtomicBoolean failed)
+            throws IOException, InterruptedException {
+        CircuitBreaker breaker = breakers.computeIfAbsent(endpointName(path), CircuitBreaker::new);
+        boolean replayable = isReplayable(method, path);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(MAX_RETRY_MILLIS);
+
+        for (int attempt = 1; ; attempt++) {
+            breaker.acquire();
+
+            ApiResponse response;
+            try {
+                response = delegate.send(method, path, body);
+            } catch (HttpTimeoutException e) {
+                // Another attempt would likely wait out the whole timeout again
+                breaker.recordFailure();
+                throw e;
+            } catch (IOException e) {
+                breaker.recordFailure();
+                long wait = backoffMillis(attempt);
+                if (!replayable || attempt >= MAX_ATTEMPTS || !canWait(deadline, wait)) {
+                    throw e;
+                }
+                retrying(failed);
+                Thread.sleep(wait);
+                continue;
+            } catch (InterruptedException | RuntimeException e) {
+                breaker.release();
+                throw e;
+            }
+
+            if (!isRetryable(response)) {
+                breaker.recordSuccess();
+                return response;
+            }
+
+            breaker.recordFailure();
+            long retryAfter = retryAfterMillis(response);
+            long wait = retryAfter > 0 ? retryAfter : backoffMillis(attempt);
+            if (!(replayable || response.statusCode == 429) || attempt >= MAX_ATTEMPTS
+                    || wait > MAX_RETRY_AFTER_MILLIS || !canWait(deadline, wait)) {
+                // Out of retries - the caller reports the last error
+                return response;
+            }
+            response.close();
+            retrying(failed);
+            Thread.sleep(wait);
+        }
+    }
+
+    private void retrying(AtomicBoolean failed) {
+        retryCount.incrementAndGet();
+        if (failed != null) {
+            failed.set(true);
+        }
+    }
+
+    private static boolean canWait(long deadlineNanos, long waitMillis) {
+        return System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(waitMillis) < deadlineNanos;
+    }
+
+    /**
+     * Whether sending the request twice does no harm. A repeated messages post only costs tokens,
+     * while a repeated batch post would create a second paid batch.
+     */
+    private static boolean isReplayable(String method, String path) {
+        return method.equals("GET") || method.equals("HEAD") || (method.equals("POST") && path.isEmpty());
+    }
+
+    /**
+     * Posts to the messages endpoint; if no response has arrived by the hedge delay, posts again
+     * and returns whichever succeeds first. The loser's response is closed when it arrives.
+     * No duplicate is sent while the first request is backing off from a failure, since the
+     * server is then overloaded or unreachable and a second request would only add to it.
+     */
+    @Override
+    public ApiResponse postHedged(RequestBody body) throws IOException, InterruptedException {
+        AtomicBoolean primaryFailed = new AtomicBoolean();
+        CompletableFuture<ApiResponse> primary = attempt(body, primaryFailed);
+        try {
+            return primary.get(hedgeDelayMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            // Slow so far - fall through and hedge
+        } catch (ExecutionException e) {
+            throw rethrow(e);
+        }
+
+        if (primaryFailed.get() || breakers.computeIfAbsent(endpointName(""), CircuitBreaker::new).isOpen()) {
+            // Do not add load to a failing endpoint
+            return await(primary);
+        }
+
+        hedgeCount.incrementAndGet();
+        CompletableFuture<ApiResponse> hedge = attempt(body, null);
+
+        CompletableFuture<ApiResponse> first = new CompletableFuture<>();
+        AtomicInteger pending = new AtomicInteger(2);
+        primary.whenComplete((response, error) -> settle(first, pending, response, error, false));
+        hedge.whenComplete((response, error) -> settle(first, pending, response, error, true));
+        return await(first);
+    }
+
+    /**
+     * @param failed set if the attempt is retried; only the primary attempt passes one and records its latency
+     */
+    private CompletableFuture<ApiResponse> attempt(RequestBody body, AtomicBoolean failed) {
+        return AppExecutor.supply(AppExecutor.TaskType.HEDGE, () -> {
+            long start = System.nanoTime();
+            ApiResponse response = send("POST", "", body, failed);
+            if (failed != null && !failed.get() && response.statusCode == 200) {
+                recordLatency((System.nanoTime() - start) / 1_000_000);
+            }
+            return response;
+        });
+    }
+
+    /**
+     * Completes first with the first successful response, or with the last failure if both fail
+     */
+    private void settle(CompletableFuture<ApiResponse> first, AtomicInteger pending,
+                        ApiResponse response, Throwable error, boolean isHedge) {
+        boolean last = pending.decrementAndGet() == 0;
+        if (error == null && response.statusCode == 200) {
+            synchronized (first) {
+                if (!first.isDone() && isHedge) {
+                    hedgeWinCount.incrementAndGet();
+                }
+                if (!first.complete(response)) {
+                    closeQuietly(response);
+                }
+            }
+        } else if (last) {
+            if (error != null) {
+                first.completeExceptionally(error);
+            } else if (!first.complete(response)) {
+                closeQuietly(response);
+            }
+        } else if (response != null) {
+            // The other attempt may still succeed
+            closeQuietly(response);
+        }
+    }
+
+    private static ApiResponse await(CompletableFuture<ApiResponse> future) throws IOException, InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static IOException rethrow(ExecutionException e) throws InterruptedException {
+        Throwable cause = AppExecutor.unwrap(e.getCause());
+        if (cause instanceof IOException) {
+            return (IOException) cause;
+        }
+        if (cause instanceof InterruptedException) {
+            throw (InterruptedException) cause;
+        }
+        if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+        }
+        return new IOException(cause);
+    }
+
+    private static void closeQuietly(ApiResponse response) {
+        try {
+            response.close();
+        } catch (IOException e) {
+            // Nothing useful to do with a failed close of a discarded response
+        }
+    }
+
+    /**
+     * Whether the request should be sent again. The API's x-should-retry header wins when present.
+     */
+    private static boolean isRetryable(ApiResponse response) {
+        String shouldRetry = response.header("x-should-retry");
+        if (shouldRetry != null) {
+            return shouldRetry.equalsIgnoreCase("true");
+        }
+        int code = response.statusCode;
+        return code == 408 || code == 409 || code == 429 || code >= 500;
+    }
+
+    /**
+     * Exponential backoff with jitter, so sessions that failed together do not retry together
+     */
+    private static long backoffMillis(int attempt) {
+        long ceiling = Math.min(MAX_BACKOFF_MILLIS, BASE_BACKOFF_MILLIS << (attempt - 1));
+        return ceiling / 2 + ThreadLocalRandom.current().nextLong(ceiling / 2 + 1);
+    }
+
+    /**
+     * Gets the wait the server asked for in retry-after (in seconds), or 0 if it did not say
+     */
+    private static long retryAfterMillis(ApiResponse response) {
+        String retryAfter = response.header("retry-after");
+        if (retryAfter == null) {
+            return 0;
+        }
+        try {
+            return (long) (Double.parseDouble(retryAfter.trim()) * 1000);
+        } catch (NumberFormatException e) {
+            // An HTTP date instead of seconds - fall back to our own backoff
+            return 0;
+        }
+    }
+
+    private static String endpointName(String path) {
+        if (path.isEmpty()) {
+            return "messages";
+        }
+        return path.contains("/batches") ? "batches" : path;
+    }
+
+    private synchronized void recordLatency(long millis) {
+        latencies[latencyCount % LATENCY_SAMPLES] = millis;
+        latencyCount++;
+    }
+
+    /**
+     * How long a hedged request waits before sending its duplicate
+     */
+    public synchronized long hedgeDelayMillis() {
+        int count = Math.min(latencyCount, LATENCY_SAMPLES);
+        if (count < MIN_LATENCY_SAMPLES) {
+            return DEFAULT_HEDGE_DELAY_MILLIS;
+        }
+        long[] sorted = Arrays.copyOf(latencies, count);
+        Arrays.sort(sorted);
+        return Math.max(MIN_HEDGE_DELAY_MILLIS, sorted[(int) Math.ceil(count * 0.95) - 1]);
+    }
+
+    public long getRetryCount() {
+        return retryCount.get();
+    }
+
+    public long getHedgeCount() {
+        return hedgeCount.get();
+    }
+
+    public long getHedgeWinCount() {
+        return hedgeWinCount.get();
+    }
+
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    public String describeStats() {
+        StringBuilder stats = new StringBuilder(String.format(
+                "retries=%d hedges=%d hedgeWins=%d hedgeDelay=%dms rejected=%d",
+                getRetryCount(), getHedgeCount(), getHedgeWinCount(), hedgeDelayMillis(), getRejectedCount()));
+        for (CircuitBreaker breaker : breakers.values()) {
+            stats.append(' ').append(breaker.endpoint).append('=').append(breaker.isOpen() ? "open" : "closed");
+        }
+        return stats.toString();
+    }
+
+    /**
+     * Opens after BREAKER_FAILURE_THRESHOLD failures in a row. Once BREAKER_OPEN_MILLIS has passed,
+     * one probe request is let through; its success closes the breaker and its failure reopens it.
+     */
+    private class CircuitBreaker {
+        final String endpoint;
+        private int consecutiveFailures = 0;
+        private boolean open = false;
+        private long openUntilNanos = 0;
+        private boolean probing = false;
+
+        CircuitBreaker(String endpoint) {
+            this.endpoint = endpoint;
+        }
+
+        synchronized void acquire() throws CircuitOpenException {
+            if (!open) {
+                return;
+            }
+            long remaining = openUntilNanos - System.nanoTime();
+            if (remaining > 0 || probing) {
+                rejectedCount.incrementAndGet();
+                throw new CircuitOpenException(endpoint, Math.max(0, remaining) / 1_000_000);
+            }
+            probing = true;
+        }
+
+        synchronized void recordSuccess() {
+            consecutiveFailures = 0;
+            open = false;
+            probing = false;
+        }
+
+        synchronized void recordFailure() {
+            consecutiveFailures++;
+            probing = false;
+            if (consecutiveFailures >= BREAKER_FAILURE_THRESHOLD) {
+                if (!open) {
+                    System.err.println("Circuit breaker opened for API endpoint '" + endpoint + "'");
+                }
+                open = true;
+                openUntilNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(BREAKER_OPEN_MILLIS);
+            }
+        }
+
+        /**
+         * Gives up a probe that ended without an answer either way
+         */
+        synchronized void release() {
+            probing = false;
+        }
+
+        synchronized boolean isOpen() {
+            return open && (probing || System.nanoTime() < openUntilNanos);
+        }
+    }
+}
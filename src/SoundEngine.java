@@ -0,0 +1,357 @@
+import javazoom.jl.decoder.Bitstream;
+import javazoom.jl.decoder.Decoder;
+import javazoom.jl.decoder.Header;
+import javazoom.jl.decoder.SampleBuffer;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.LineUnavailableException;
+import javax.sound.sampled.SourceDataLine;
+import java.io.BufferedInputStream;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Plays short MP3 clips with low latency.
+ * Each clip is decoded to 16-bit stereo PCM once and kept in an LRU cache bounded by size.
+ * Playback goes through one SourceDataLine fed by a software mixer with a fixed number of voices,
+ * so starting a cached sound only claims a voice - nothing is opened, decoded or allocated.
+ * The line is opened once on the AUDIO executor, normally during StartupWarmup.
+ */
+public class SoundEngine {
+
+    private static final int SAMPLE_RATE = 44100;
+    private static final int CHANNELS = 2;
+
+    // 256 frames is about 6 ms of audio per mix pass
+    private static final int MIX_FRAMES = 256;
+    private static final int LINE_BUFFER_FRAMES = MIX_FRAMES * 4;
+    private static final int VOICE_COUNT = 8;
+    private static final long MAX_CACHE_BYTES = 32L * 1024 * 1024;
+
+    /**
+     * Decoded clip: interleaved stereo samples at SAMPLE_RATE
+     */
+    static class Clip {
+        final short[] samples;
+
+        Clip(short[] samples) {
+            this.samples = samples;
+        }
+
+        long sizeInBytes() {
+            return samples.length * 2L;
+        }
+    }
+
+    private static class Voice {
+        Clip clip;
+        int position;
+        long startedAt;
+    }
+
+    private static final Map<String, Clip> cache = new LinkedHashMap<>(64, 0.75f, true);
+    private static long cachedBytes = 0;
+    private static final Map<String, CompletableFuture<Clip>> loading = new ConcurrentHashMap<>();
+
+    // Resources that are missing or cannot be decoded, so they are not retried every card
+    private static final Set<String> unplayable = Collections.newSetFromMap(new ConcurrentHashMap<>());
+
+    private static final Voice[] voices = new Voice[VOICE_COUNT];
+    private static long voiceClock = 0;
+
+    private static SourceDataLine line;
+    private static CompletableFuture<Boolean> mixerOpening;
+    private static volatile boolean mixerReady = false;
+
+    static {
+        for (int i = 0; i < VOICE_COUNT; i++) {
+            voices[i] = new Voice();
+        }
+    }
+
+    /**
+     * Plays a clip, decoding it first if it is not cached yet
+     * @return false if the mixer is not open (yet) or the clip is known to be unplayable,
+     *         and the caller should play the clip another way
+     */
+    public static boolean play(String resourcePath) {
+        if (!mixerReady) {
+            // Opening the line can take a while, so this caller - often the EDT - never waits for it
+            openMixer();
+            return false;
+        }
+        if (unplayable.contains(resourcePath)) {
+            return false;
+        }
+
+        Clip clip = getCached(resourcePath);
+        if (clip != null) {
+            startVoice(clip);
+        } else {
+            loadAsync(resourcePath).thenAccept(loaded -> {
+                if (loaded != null) {
+                    startVoice(loaded);
+                }
+            });
+        }
+        return true;
+    }
+
+    /**
+     * Decodes a clip in the background so its first play starts immediately
+     */
+    public static void preload(String resourcePath) {
+        if (unplayable.contains(resourcePath) || getCached(resourcePath) != null) {
+            return;
+        }
+        loadAsync(resourcePath);
+    }
+
+    public static long getCachedBytes() {
+        synchronized (cache) {
+            return cachedBytes;
+        }
+    }
+
+    public static int getCachedClipCount() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    private static Clip getCached(String resourcePath) {
+        synchronized (cache) {
+            return cache.get(resourcePath);
+        }
+    }
+
+    /**
+     * Decodes a clip in the background, sharing the work if the same clip is already being decoded
+     */
+    private static CompletableFuture<Clip> loadAsync(String resourcePath) {
+        CompletableFuture<Clip> future = loading.computeIfAbsent(resourcePath, path ->
+            AppExecutor.supply(AppExecutor.TaskType.AUDIO, () -> load(path)));
+        future.whenComplete((clip, error) -> loading.remove(resourcePath, future));
+        return future;
+    }
+
+    private static Clip load(String resourcePath) {
+        Clip clip = getCached(resourcePath);
+        if (clip != null) {
+            return clip;
+        }
+
+        clip = decode(resourcePath);
+        if (clip == null) {
+            unplayable.add(resourcePath);
+            return null;
+        }
+
+        synchronized (cache) {
+            Clip previous = cache.put(resourcePath, clip);
+            if (previous != null) {
+                cachedBytes -= previous.sizeInBytes();
+            }
+            cachedBytes += clip.sizeInBytes();
+
+            // Evict least recently played clips, but always keep the one just loaded
+            var iterator = cache.entrySet().iterator();
+            while (cachedBytes > MAX_CACHE_BYTES && cache.size() > 1) {
+                Map.Entry<String, Clip> eldest = iterator.next();
+                cachedBytes -= eldest.getValue().sizeInBytes();
+                iterator.remove();
+            }
+        }
+        return clip;
+    }
+
+    /**
+     * Decodes a whole MP3 resource into stereo PCM at the mixer's sample rate
+     */
+    private static Clip decode(String resourcePath) {
+        InputStream audioSrc = SoundEngine.class.getResourceAsStream(resourcePath);
+        if (audioSrc == null) {
+            System.err.println("Could not find audio file: " + resourcePath);
+            return null;
+        }
+
+        Bitstream bitstream = new Bitstream(new BufferedInputStream(audioSrc));
+        try {
+            Decoder decoder = new Decoder();
+            short[] pcm = new short[SAMPLE_RATE * CHANNELS];
+            int length = 0;
+            int sourceRate = SAMPLE_RATE;
+
+            Header header;
+            while ((header = bitstream.readFrame()) != null) {
+                SampleBuffer frame = (SampleBuffer) decoder.decodeFrame(header, bitstream);
+                short[] samples = frame.getBuffer();
+                int count = frame.getBufferLength();
+                sourceRate = decoder.getOutputFrequency();
+                boolean mono = decoder.getOutputChannels() == 1;
+
+                int needed = length + (mono ? count * 2 : count);
+                if (needed > pcm.length) {
+                    pcm = Arrays.copyOf(pcm, Math.max(needed, pcm.length * 2));
+                }
+                if (mono) {
+                    for (int i = 0; i < count; i++) {
+                        pcm[length++] = samples[i];
+                        pcm[length++] = samples[i];
+                    }
+                } else {
+                    System.arraycopy(samples, 0, pcm, length, count);
+                    length += count;
+                }
+                bitstream.closeFrame();
+            }
+
+            return new Clip(resample(pcm, length, sourceRate));
+        } catch (Exception e) {
+            System.err.println("Error decoding sound: " + resourcePath);
+            e.printStackTrace();
+            return null;
+        } finally {
+            try {
+                bitstream.close();
+            } catch (Exception ignored) {
+            }
+        }
+    }
+
+    /**
+     * Converts interleaved stereo samples to SAMPLE_RATE with linear interpolation
+     */
+    private static short[] resample(short[] pcm, int length, int sourceRate) {
+        if (sourceRate == SAMPLE_RATE || sourceRate <= 0) {
+            return Arrays.copyOf(pcm, length);
+        }
+
+        int sourceFrames = length / CHANNELS;
+        int targetFrames = (int) ((long) sourceFrames * SAMPLE_RATE / sourceRate);
+        short[] out = new short[targetFrames * CHANNELS];
+        double step = sourceRate / (double) SAMPLE_RATE;
+
+        for (int frame = 0; frame < targetFrames; frame++) {
+            double position = frame * step;
+            int index = (int) position;
+            double fraction = position - index;
+            int next = Math.min(index + 1, sourceFrames - 1);
+            for (int channel = 0; channel < CHANNELS; channel++) {
+                int a = pcm[index * CHANNELS + channel];
+                int b = pcm[next * CHANNELS + channel];
+                out[frame * CHANNELS + channel] = (short) (a + (b - a) * fraction);
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Claims a free voice for the clip, stealing the oldest one if all are busy
+     */
+    private static void startVoice(Clip clip) {
+        synchronized (voices) {
+            Voice chosen = voices[0];
+            for (Voice voice : voices) {
+                if (voice.clip == null) {
+                    chosen = voice;
+                    break;
+                }
+                if (voice.startedAt < chosen.startedAt) {
+                    chosen = voice;
+                }
+            }
+            chosen.clip = clip;
+            chosen.position = 0;
+            chosen.startedAt = ++voiceClock;
+            voices.notifyAll();
+        }
+    }
+
+    /**
+     * Opens the audio line and starts the mixer in the background, once
+     * @return completes with whether the mixer is running
+     */
+    public static synchronized CompletableFuture<Boolean> openMixer() {
+        if (mixerOpening == null) {
+            mixerOpening = AppExecutor.supply(AppExecutor.TaskType.AUDIO, SoundEngine::startMixer);
+        }
+        return mixerOpening;
+    }
+
+    private static boolean startMixer() {
+        try {
+            AudioFormat format = new AudioFormat(SAMPLE_RATE, 16, CHANNELS, true, false);
+            line = AudioSystem.getSourceDataLine(format);
+            line.open(format, LINE_BUFFER_FRAMES * CHANNELS * 2);
+            line.start();
+        } catch (LineUnavailableException | IllegalArgumentException | SecurityException e) {
+            System.err.println("No audio line available, falling back to direct playback: " + e.getMessage());
+            return false;
+        }
+
+        // A platform thread, since it spends its life blocked in native line writes
+        Thread mixerThread = new Thread(SoundEngine::mixLoop, "sound-mixer");
+        mixerThread.setDaemon(true);
+        mixerThread.setPriority(Thread.MAX_PRIORITY);
+        mixerThread.start();
+        mixerReady = true;
+        return true;
+    }
+
+    private static void mixLoop() {
+        int[] mix = new int[MIX_FRAMES * CHANNELS];
+        byte[] out = new byte[MIX_FRAMES * CHANNELS * 2];
+
+        while (true) {
+            synchronized (voices) {
+                while (!anyVoiceActive()) {
+                    try {
+                        voices.wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+
+                Arrays.fill(mix, 0);
+                for (Voice voice : voices) {
+                    if (voice.clip == null) {
+                        continue;
+                    }
+                    short[] samples = voice.clip.samples;
+                    int count = Math.min(mix.length, samples.length - voice.position);
+                    for (int i = 0; i < count; i++) {
+                        mix[i] += samples[voice.position + i];
+                    }
+                    voice.position += count;
+                    if (voice.position >= samples.length) {
+                        voice.clip = null;
+                    }
+                }
+            }
+
+            for (int i = 0; i < mix.length; i++) {
+                int sample = Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, mix[i]));
+                out[i * 2] = (byte) sample;
+                out[i * 2 + 1] = (byte) (sample >> 8);
+            }
+            line.write(out, 0, out.length);
+        }
+    }
+
+    private static boolean anyVoiceActive() {
+        for (Voice voice : voices) {
+            if (voice.clip != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,129 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Warms up fonts, images, the card catalog, audio and the HTTP client in parallel at startup.
+ * Stages are started in priority order on a fork-join pool; the ones the first screen needs are
+ * marked critical so the caller can show it as soon as those are done. A stage that reuses another's
+ * work waits for it rather than repeating it. Every stage is timed.
+ */
+public class StartupWarmup {
+
+    private static final long START = System.nanoTime();
+
+    private static final ForkJoinPool pool = new ForkJoinPool(
+            Math.max(2, Runtime.getRuntime().availableProcessors()),
+            ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true);
+
+    private static final Map<String, Double> stageMillis = new ConcurrentHashMap<>();
+    private static final Map<String, Double> milestoneMillis = new ConcurrentHashMap<>();
+
+    private static class Stage {
+        final String name;
+        final boolean critical;
+        final String after;
+        final Runnable task;
+
+        Stage(String name, boolean critical, Runnable task) {
+            this(name, critical, null, task);
+        }
+
+        /**
+         * @param after the stage this one waits for, or null to start straight away
+         */
+        Stage(String name, boolean critical, String after, Runnable task) {
+            this.name = name;
+            this.critical = critical;
+            this.after = after;
+            this.task = task;
+        }
+    }
+
+    // Highest priority first - the pool runs submissions in this order as workers free up
+    private static final Stage[] STAGES = {
+        new Stage("fonts", true, () -> Fonts.ClashFont.getSize()),
+        new Stage("profile-assets", true, ProfileInputPanel::preloadAssets),
+        new Stage("dialogue-audio", false, AudioPlayer::preloadDialogue),
+        new Stage("audio-line", false, () -> SoundEngine.openMixer().join()),
+        new Stage("card-catalog", false, CardCatalog::get),
+        // Shares its backgrounds with the profile screen, which are then already cached
+        new Stage("swipe-assets", false, "profile-assets", SwipePanel::preloadAssets),
+        new Stage("http-client", false, HttpApiTransport::shared)
+    };
+
+    /**
+     * Starts every stage and returns a future that completes once the critical ones have finished
+     */
+    public static CompletableFuture<Void> start() {
+        List<CompletableFuture<Void>> critical = new ArrayList<>();
+        List<CompletableFuture<Void>> all = new ArrayList<>();
+        Map<String, CompletableFuture<Void>> started = new HashMap<>();
+
+        for (Stage stage : STAGES) {
+            // runStage never throws, so a dependent stage still runs if the one it waits for failed
+            CompletableFuture<Void> future = stage.after == null
+                ? CompletableFuture.runAsync(() -> runStage(stage), pool)
+                : started.get(stage.after).thenRunAsync(() -> runStage(stage), pool);
+            started.put(stage.name, future);
+            all.add(future);
+            if (stage.critical) {
+                critical.add(future);
+            }
+        }
+
+        CompletableFuture.allOf(all.toArray(new CompletableFuture<?>[0]))
+            .whenComplete((ignored, error) -> {
+                mark("warmup-complete");
+                System.out.println(describe());
+            });
+        return CompletableFuture.allOf(critical.toArray(new CompletableFuture<?>[0]));
+    }
+
+    /**
+     * Records a point in startup, such as the first frame, in milliseconds since the app started
+     */
+    public static void mark(String milestone) {
+        milestoneMillis.putIfAbsent(milestone, millisSince(START));
+    }
+
+    public static Map<String, Double> getStageMillis() {
+        return stageMillis;
+    }
+
+    public static Map<String, Double> getMilestoneMillis() {
+        return milestoneMillis;
+    }
+
+    public static String describe() {
+        StringBuilder report = new StringBuilder("Startup:");
+        milestoneMillis.entrySet().stream()
+            .sorted(Map.Entry.comparingByValue())
+            .forEach(entry -> report.append(String.format(" %s=%.0fms", entry.getKey(), entry.getValue())));
+        report.append(" | stages:");
+        for (Stage stage : STAGES) {
+            Double millis = stageMillis.get(stage.name);
+            report.append(millis != null ? String.format(" %s=%.0fms", stage.name, millis) : " " + stage.name + "=pending");
+        }
+        return report.toString();
+    }
+
+    private static void runStage(Stage stage) {
+        long start = System.nanoTime();
+        try {
+            stage.task.run();
+        } catch (Throwable t) {
+            System.err.println("Warm-up stage " + stage.name + " failed: " + t);
+        } finally {
+            stageMillis.put(stage.name, millisSince(start));
+        }
+    }
+
+    private static double millisSince(long start) {
+        return (System.nanoTime() - start) / 1_000_000.0;
+    }
+}
@@ -0,0 +1,179 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.http.HttpRequest;
+import java.nio.ByteBuffer;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Feeds a RequestBody to HttpClient in fixed-size chunks.
+ * The body is written on a background virtual thread, which blocks until the client asks for more data.
+ * The client may keep a chunk queued for a while after taking it, so each body rotates through a ring of
+ * RING_SIZE chunks and refills one only once the client has asked for the chunk that replaces it, by which
+ * time it has taken RING_SIZE - 1 later ones. A body therefore holds at most RING_SIZE chunks however large
+ * it is. A client that asks for everything up front gives no such signal, so then each chunk is fresh.
+ */
+class StreamingBodyPublisher implements HttpRequest.BodyPublisher {
+    private static final int CHUNK_SIZE = 16 * 1024;
+    private static final int RING_SIZE = 4;
+
+    private final ApiTransport.RequestBody body;
+
+    StreamingBodyPublisher(ApiTransport.RequestBody body) {
+        this.body = body;
+    }
+
+    @Override
+    public long contentLength() {
+        // Unknown until written - sent chunked (HTTP/1.1) or as DATA frames (HTTP/2)
+        return -1;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super ByteBuffer> subscriber) {
+        ChunkSubscription subscription = new ChunkSubscription(subscriber);
+        subscriber.onSubscribe(subscription);
+
+        AppExecutor.run(AppExecutor.TaskType.REQUEST_WRITER, subscription::writeBody);
+    }
+
+    private class ChunkSubscription implements Flow.Subscription {
+        private final Flow.Subscriber<? super ByteBuffer> subscriber;
+        // Chunks asked for and not yet sent; Long.MAX_VALUE means unbounded
+        private final AtomicLong demand = new AtomicLong();
+        private volatile Thread writer;
+        private volatile boolean unbounded = false;
+        private volatile boolean cancelled = false;
+
+        ChunkSubscription(Flow.Subscriber<? super ByteBuffer> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                cancel();
+                subscriber.onError(new IllegalArgumentException("Non-positive request: " + n));
+                return;
+            }
+            // Demand adds up and saturates instead of overflowing
+            long total = demand.accumulateAndGet(n, (current, added) -> current + added < 0 ? Long.MAX_VALUE : current + added);
+            if (total == Long.MAX_VALUE) {
+                unbounded = true;
+            }
+            LockSupport.unpark(writer);
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            LockSupport.unpark(writer);
+        }
+
+        void writeBody() {
+            writer = Thread.currentThread();
+            try (ChunkOutputStream out = new ChunkOutputStream(this)) {
+                body.writeTo(out);
+            } catch (IOException | RuntimeException e) {
+                if (!cancelled) {
+                    subscriber.onError(e);
+                }
+                return;
+            }
+            if (!cancelled) {
+                subscriber.onComplete();
+            }
+        }
+
+        /**
+         * Blocks until the client has asked for another chunk
+         */
+        void awaitDemand() throws IOException {
+            while (true) {
+                if (cancelled) {
+                    throw new IOException("Request body cancelled");
+                }
+                if (demand.get() > 0) {
+                    return;
+                }
+                // request() unparks; parking rather than waiting on a monitor keeps the carrier free
+                LockSupport.park(this);
+            }
+        }
+
+        /**
+         * Hands one chunk to the client once it has asked for one
+         */
+        void emit(byte[] chunk, int length) throws IOException {
+            awaitDemand();
+            // Only this thread takes demand away, so it is still positive here
+            demand.getAndUpdate(current -> current == Long.MAX_VALUE ? current : current - 1);
+            subscriber.onNext(ByteBuffer.wrap(chunk, 0, length));
+        }
+    }
+
+    private static class ChunkOutputStream extends OutputStream {
+        private final ChunkSubscription subscription;
+        private final byte[][] ring = new byte[RING_SIZE][];
+        private long emitted = 0;
+        private byte[] chunk;
+        private int position = 0;
+
+        ChunkOutputStream(ChunkSubscription subscription) throws IOException {
+            this.subscription = subscription;
+            this.chunk = nextChunk();
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (position == chunk.length) {
+                flushChunk();
+            }
+            chunk[position++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            while (length > 0) {
+                if (position == chunk.length) {
+                    flushChunk();
+                }
+                int count = Math.min(length, chunk.length - position);
+                System.arraycopy(bytes, offset, chunk, position, count);
+                position += count;
+                offset += count;
+                length -= count;
+            }
+        }
+
+        private void flushChunk() throws IOException {
+            // The client may still hold the emitted chunk, so carry on in the next one
+            subscription.emit(chunk, position);
+            emitted++;
+            chunk = nextChunk();
+            position = 0;
+        }
+
+        private byte[] nextChunk() throws IOException {
+            int slot = (int) (emitted % RING_SIZE);
+            if (ring[slot] != null) {
+                // The slot last held the chunk RING_SIZE back; wait until the client asks for this one
+                subscription.awaitDemand();
+                if (!subscription.unbounded) {
+                    return ring[slot];
+                }
+            }
+            ring[slot] = new byte[CHUNK_SIZE];
+            return ring[slot];
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (position > 0) {
+                subscription.emit(chunk, position);
+                position = 0;
+            }
+        }
+    }
+}
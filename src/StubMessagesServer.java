@@ -0,0 +1,564 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * An in-process stand-in for the Messages API, so the whole client path can be benchmarked and
+ * soak-tested offline. It answers in the API's shapes - messages, server-sent event streams,
+ * errors and message batches - with scripted replies, scores and verdicts, and adds latency
+ * and errors drawn from configurable distributions. Each request draws from its own generator,
+ * seeded from the server seed, the request's content and how many times that exact request has
+ * been seen, so a run repeats however its conversations interleave and a retry still draws afresh.
+ */
+public class StubMessagesServer {
+
+    /**
+     * A distribution of delays in milliseconds
+     */
+    public interface Latency {
+        long sampleMillis(Random random);
+
+        static Latency none() {
+            return random -> 0;
+        }
+
+        static Latency fixed(long millis) {
+            return random -> millis;
+        }
+
+        static Latency uniform(long minMillis, long maxMillis) {
+            return random -> minMillis + (long) (random.nextDouble() * (maxMillis - minMillis));
+        }
+
+        /**
+         * Long-tailed like real model latency; sigma around 0.5 gives a p99 about three times the median
+         */
+        static Latency logNormal(long medianMillis, double sigma) {
+            return random -> Math.round(medianMillis * Math.exp(sigma * random.nextGaussian()));
+        }
+    }
+
+    private static final String MESSAGES_PATH = "/v1/messages";
+    private static final String BATCHES_PATH = MESSAGES_PATH + "/batches";
+    // Characters of reply text per streamed delta
+    private static final int STREAM_CHUNK_CHARS = 12;
+    private static final int CHARS_PER_TOKEN = 4;
+
+    private final HttpServer server;
+    // Platform threads: HttpServer reads request bodies inside synchronized methods, which would pin
+    // a virtual thread's carrier and can starve the client's body writer when both run in one JVM
+    private final ExecutorService handlers = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "stub-handler");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final long seed;
+    // Times each distinct request has been seen, keyed by its content hash
+    private final Map<Long, AtomicInteger> occurrences = new ConcurrentHashMap<>();
+
+    private volatile List<String> replies = List.of("Ready for battle!");
+    private volatile int[] scores = {5};
+    private volatile boolean[] verdicts = {true};
+
+    private volatile Latency latency = Latency.none();
+    private volatile Latency chunkLatency = Latency.none();
+    // Status code to the share of requests that fail with it, in the order they were set
+    private volatile Map<Integer, Double> errorRates = Collections.emptyMap();
+    private volatile int retryAfterSeconds = 0;
+
+    // Result lines of each batch, ready as soon as it is created
+    private final Map<String, List<String>> batches = new ConcurrentHashMap<>();
+    private final AtomicLong nextId = new AtomicLong();
+
+    // Metrics
+    private final AtomicLong requestCount = new AtomicLong();
+    private final AtomicLong streamCount = new AtomicLong();
+    private final AtomicLong errorCount = new AtomicLong();
+
+    /**
+     * @param port the port to listen on, or 0 for any free one
+     * @param seed seeds the latency, error and scripted-answer draws
+     */
+    public StubMessagesServer(int port, long seed) throws IOException {
+        this.seed = seed;
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext(MESSAGES_PATH, this::handle);
+        server.setExecutor(handlers);
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public void stop() {
+        server.stop(0);
+        handlers.shutdownNow();
+    }
+
+    /**
+     * The messages endpoint, for HttpApiTransport or the claude.api.url property
+     */
+    public String getUrl() {
+        return baseUrl() + MESSAGES_PATH;
+    }
+
+    private String baseUrl() {
+        return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort();
+    }
+
+    /**
+     * Character replies to pick from for replies, greetings and fused turns
+     */
+    public void setReplies(String... replies) {
+        this.replies = List.of(replies);
+    }
+
+    /**
+     * Scores to pick from for scoring requests and fused turns
+     */
+    public void setScores(int... scores) {
+        this.scores = scores.clone();
+    }
+
+    /**
+     * Verdicts to pick from for evaluation requests and fused turns that ask for one
+     */
+    public void setVerdicts(boolean... verdicts) {
+        this.verdicts = verdicts.clone();
+    }
+
+    /**
+     * Delay before each response's headers are sent
+     */
+    public void setLatency(Latency latency) {
+        this.latency = latency;
+    }
+
+    /**
+     * Delay before each text delta of a stream
+     */
+    public void setChunkLatency(Latency chunkLatency) {
+        this.chunkLatency = chunkLatency;
+    }
+
+    /**
+     * Fails this share of requests with the given status, e.g. 529 for overloaded or 429 for rate limited
+     */
+    public synchronized void setErrorRate(int status, double rate) {
+        Map<Integer, Double> rates = new LinkedHashMap<>(errorRates);
+        rates.put(status, rate);
+        errorRates = rates;
+    }
+
+    /**
+     * Replaces all error rates at once; an empty map turns error injection off
+     */
+    public synchronized void setErrorRates(Map<Integer, Double> rates) {
+        errorRates = new LinkedHashMap<>(rates);
+    }
+
+    /**
+     * Sends retry-after with 429 and 529 errors, or leaves it out if 0
+     */
+    public void setRetryAfter(int seconds) {
+        this.retryAfterSeconds = seconds;
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            String path = exchange.getRequestURI().getPath();
+            String method = exchange.getRequestMethod();
+            byte[] body = exchange.getRequestBody().readAllBytes();
+            requestCount.incrementAndGet();
+            Random random = random(method + " " + path, body);
+
+            Thread.sleep(latency.sampleMillis(random));
+            int errorStatus = sampleError(random);
+            if (errorStatus != 0) {
+                sendError(exchange, errorStatus);
+            } else if (method.equals("POST") && path.equals(MESSAGES_PATH)) {
+                createMessage(exchange, body, random);
+            } else if (method.equals("POST") && path.equals(BATCHES_PATH)) {
+                createBatch(exchange, body, random);
+            } else if (method.equals("GET") && path.startsWith(BATCHES_PATH + "/")) {
+                getBatch(exchange, path.substring(BATCHES_PATH.length() + 1));
+            } else {
+                sendError(exchange, 404);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            // Unparseable request bodies end up here, as they would with the real API
+            sendError(exchange, 400);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * A generator for one request. Two requests only share draws if they are byte for byte the same
+     * and are the same repeat of it, as when two runs send the same conversation.
+     */
+    private Random random(String target, byte[] body) {
+        // 64-bit FNV-1a, so distinct requests practically never share a repeat count
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : target.getBytes(StandardCharsets.UTF_8)) {
+            hash = (hash ^ (b & 0xff)) * 0x100000001b3L;
+        }
+        for (byte b : body) {
+            hash = (hash ^ (b & 0xff)) * 0x100000001b3L;
+        }
+        int occurrence = occurrences.computeIfAbsent(hash, key -> new AtomicInteger()).getAndIncrement();
+        return new Random((seed * 31 + hash) * 31 + occurrence);
+    }
+
+    private void createMessage(HttpExchange exchange, byte[] body, Random random) throws IOException, InterruptedException {
+        JSONObject request = new JSONObject(new String(body, StandardCharsets.UTF_8));
+        String text = answer(request, random);
+        int inputTokens = body.length / CHARS_PER_TOKEN;
+
+        if (!request.optBoolean("stream")) {
+            sendJson(exchange, 200, message(request, text, inputTokens, tokens(text)));
+            return;
+        }
+
+        streamCount.incrementAndGet();
+        exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+        exchange.sendResponseHeaders(200, 0);
+        OutputStream out = exchange.getResponseBody();
+
+        JSONObject start = message(request, null, inputTokens, 1);
+        sendEvent(out, "message_start", new JSONObject().put("type", "message_start").put("message", start));
+        sendEvent(out, "content_block_start", new JSONObject().put("type", "content_block_start").put("index", 0)
+                .put("content_block", new JSONObject().put("type", "text").put("text", "")));
+        for (int i = 0; i < text.length(); i += STREAM_CHUNK_CHARS) {
+            Thread.sleep(chunkLatency.sampleMillis(random));
+            JSONObject delta = new JSONObject().put("type", "text_delta")
+                    .put("text", text.substring(i, Math.min(text.length(), i + STREAM_CHUNK_CHARS)));
+            sendEvent(out, "content_block_delta", new JSONObject().put("type", "content_block_delta").put("index", 0)
+                    .put("delta", delta));
+        }
+        sendEvent(out, "content_block_stop", new JSONObject().put("type", "content_block_stop").put("index", 0));
+        sendEvent(out, "message_delta", new JSONObject().put("type", "message_delta")
+                .put("delta", new JSONObject().put("stop_reason", "end_turn"))
+                .put("usage", new JSONObject().put("output_tokens", tokens(text))));
+        sendEvent(out, "message_stop", new JSONObject().put("type", "message_stop"));
+    }
+
+    /**
+     * Picks the scripted answer for a request. Requests are told apart by their instructions,
+     * so this has to follow the wording in CharacterConversationSimulator.
+     */
+    private String answer(JSONObject request, Random random) {
+        String system = String.valueOf(request.opt("system"));
+        if (system.contains("RESPONSE FORMAT")) {
+            // Fused turn; the opening brace was prefilled
+            JSONObject fused = new JSONObject().put("message", pickReply(random)).put("score", pickScore(random));
+            if (system.contains("verdict")) {
+                fused.put("verdict", pickVerdict(random) ? "yes" : "no");
+            }
+            return fused.toString().substring(1);
+        }
+        if (system.contains("Rate the user's statement")) {
+            return String.valueOf(pickScore(random));
+        }
+        if (system.contains("determine if the user successfully charmed")) {
+            return pickVerdict(random) ? "yes" : "no";
+        }
+        if (system.contains("running memo")) {
+            JSONArray messages = request.optJSONArray("messages");
+            return "They have exchanged " + (messages != null ? messages.length() : 0) + " more messages.";
+        }
+        return pickReply(random);
+    }
+
+    private String pickReply(Random random) {
+        List<String> script = replies;
+        return script.get(random.nextInt(script.size()));
+    }
+
+    private int pickScore(Random random) {
+        int[] script = scores;
+        return script[random.nextInt(script.length)];
+    }
+
+    private boolean pickVerdict(Random random) {
+        boolean[] script = verdicts;
+        return script[random.nextInt(script.length)];
+    }
+
+    /**
+     * Builds a message object; with null text its content is empty, as in a stream's message_start
+     */
+    private JSONObject message(JSONObject request, String text, int inputTokens, int outputTokens) {
+        JSONArray content = new JSONArray();
+        if (text != null) {
+            content.put(new JSONObject().put("type", "text").put("text", text));
+        }
+        JSONObject usage = new JSONObject();
+        usage.put("input_tokens", inputTokens);
+        usage.put("output_tokens", outputTokens);
+        usage.put("cache_creation_input_tokens", 0);
+        usage.put("cache_read_input_tokens", 0);
+
+        JSONObject message = new JSONObject();
+        message.put("id", "msg_stub_" + nextId.incrementAndGet());
+        message.put("type", "message");
+        message.put("role", "assistant");
+        message.put("model", request.optString("model"));
+        message.put("content", content);
+        if (text != null) {
+            message.put("stop_reason", "end_turn");
+        }
+        message.put("usage", usage);
+        return message;
+    }
+
+    /**
+     * Answers every request in the batch straight away; per-request errors use the same error rates
+     */
+    private void createBatch(HttpExchange exchange, byte[] body, Random random) throws IOException {
+        JSONArray requests = new JSONObject(new String(body, StandardCharsets.UTF_8)).getJSONArray("requests");
+        List<String> results = new ArrayList<>(requests.length());
+        for (int i = 0; i < requests.length(); i++) {
+            JSONObject entry = requests.getJSONObject(i);
+            JSONObject params = entry.getJSONObject("params");
+            // Seeded per entry, so its result does not depend on which batch it landed in
+            Random entryRandom = random("batch " + entry.getString("custom_id"),
+                    params.toString().getBytes(StandardCharsets.UTF_8));
+            int errorStatus = sampleError(entryRandom);
+            JSONObject result = new JSONObject();
+            if (errorStatus != 0) {
+                result.put("type", "errored");
+                result.put("error", errorBody(errorStatus));
+            } else {
+                String text = answer(params, entryRandom);
+                result.put("type", "succeeded");
+                result.put("message", message(params, text, params.toString().length() / CHARS_PER_TOKEN, tokens(text)));
+            }
+            results.add(new JSONObject().put("custom_id", entry.getString("custom_id")).put("result", result).toString());
+        }
+
+        String batchId = "msgbatch_stub_" + Long.toHexString(random.nextLong() >>> 1);
+        batches.put(batchId, results);
+        sendJson(exchange, 200, batch(batchId, "in_progress"));
+    }
+
+    private void getBatch(HttpExchange exchange, String rest) throws IOException {
+        boolean wantsResults = rest.endsWith("/results");
+        String batchId = wantsResults ? rest.substring(0, rest.length() - "/results".length()) : rest;
+        List<String> results = batches.get(batchId);
+        if (results == null) {
+            sendError(exchange, 404);
+        } else if (!wantsResults) {
+            sendJson(exchange, 200, batch(batchId, "ended")
+                    .put("results_url", baseUrl() + BATCHES_PATH + "/" + batchId + "/results"));
+        } else {
+            byte[] lines = (String.join("\n", results) + "\n").getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/x-jsonl");
+            exchange.sendResponseHeaders(200, lines.length);
+            exchange.getResponseBody().write(lines);
+        }
+    }
+
+    private static JSONObject batch(String batchId, String status) {
+        return new JSONObject().put("id", batchId).put("type", "message_batch").put("processing_status", status);
+    }
+
+    /**
+     * Draws whether this request fails, and with which status, or 0 if it succeeds
+     */
+    private int sampleError(Random random) {
+        double draw = random.nextDouble();
+        double cumulative = 0;
+        for (Map.Entry<Integer, Double> rate : errorRates.entrySet()) {
+            cumulative += rate.getValue();
+            if (draw < cumulative) {
+                errorCount.incrementAndGet();
+                return rate.getKey();
+            }
+        }
+        return 0;
+    }
+
+    private void sendError(HttpExchange exchange, int status) throws IOException {
+        if ((status == 429 || status == 529) && retryAfterSeconds > 0) {
+            exchange.getResponseHeaders().set("retry-after", String.valueOf(retryAfterSeconds));
+        }
+        sendJson(exchange, status, new JSONObject().put("type", "error").put("error", errorBody(status)));
+    }
+
+    private static JSONObject errorBody(int status) {
+        String type;
+        switch (status) {
+            case 400: type = "invalid_request_error"; break;
+            case 401: type = "authentication_error"; break;
+            case 404: type = "not_found_error"; break;
+            case 429: type = "rate_limit_error"; break;
+            case 529: type = "overloaded_error"; break;
+            default: type = "api_error"; break;
+        }
+        return new JSONObject().put("type", type).put("message", "Stub " + type + " (" + status + ")");
+    }
+
+    private static void sendJson(HttpExchange exchange, int status, JSONObject json) throws IOException {
+        byte[] bytes = json.toString().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        exchange.getResponseBody().write(bytes);
+    }
+
+    private static void sendEvent(OutputStream out, String type, JSONObject data) throws IOException {
+        out.write(("event: " + type + "\ndata: " + data + "\n\n").getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+
+    private static int tokens(String text) {
+        return Math.max(1, text.length() / CHARS_PER_TOKEN);
+    }
+
+    public long getRequestCount() {
+        return requestCount.get();
+    }
+
+    public long getStreamCount() {
+        return streamCount.get();
+    }
+
+    public long getErrorCount() {
+        return errorCount.get();
+    }
+
+    public String describeStats() {
+        return String.format("requests=%d streams=%d injectedErrors=%d batches=%d",
+                getRequestCount(), getStreamCount(), getErrorCount(), batches.size());
+    }
+
+    /**
+     * Soak test: runs concurrent dates against the stub through the real transport stack and
+     * reports turn latency. Arguments: sessions (default 20), turns per session (default 5).
+     */
+    public static void main(String[] args) throws Exception {
+        int sessions = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+        int turns = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        StubMessagesServer stub = new StubMessagesServer(0, 42);
+        stub.setReplies("A Hog Rider rush on the first date? Bold. I respect it.",
+                "Meet me by the King's Tower - I'll save you some elixir!",
+                "My shield's up, but you're getting past it, champion.");
+        stub.setScores(6, 8, 4, 7);
+        stub.setVerdicts(true, false);
+        stub.setLatency(Latency.logNormal(300, 0.5));
+        stub.setChunkLatency(Latency.uniform(5, 20));
+        stub.setErrorRate(529, 0.02);
+        stub.setErrorRate(429, 0.01);
+        stub.setRetryAfter(1);
+        stub.start();
+
+        HttpApiTransport http = new HttpApiTransport(stub.getUrl(), "stub-key", 16);
+        ResilientTransport resilient = new ResilientTransport(new RateLimitedTransport(http, RateLimiter.shared()));
+        CharacterConversationSimulator.setTransport(resilient);
+        // The stub has no quota, so lift the client's limits too
+        RateLimiter.shared().setLimits(1_000_000, 1_000_000_000L, 1_000_000_000L);
+
+        List<Long> latencies = Collections.synchronizedList(new ArrayList<>());
+        List<CharacterConversationSimulator.Transcript> transcripts = Collections.synchronizedList(new ArrayList<>());
+        AtomicInteger failures = new AtomicInteger();
+        long start = System.nanoTime();
+        try (ExecutorService dates = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int s = 0; s < sessions; s++) {
+                int session = s;
+                dates.submit(() -> {
+                    CharacterConversationSimulator simulator = new CharacterConversationSimulator("",
+                            "A fierce but kind knight from Clash Royale.", "Stub user " + session);
+                    for (int turn = 0; turn < turns; turn++) {
+                        long turnStart = System.nanoTime();
+                        try {
+                            if (turn == 0) {
+                                simulator.getInitialGreeting();
+                            }
+                            // Alternate streamed and whole replies
+                            simulator.sendMessage("Turn " + turn + " from session " + session,
+                                    turn % 2 == 0 ? null : delta -> { });
+                            latencies.add(System.nanoTime() - turnStart);
+                        } catch (Exception e) {
+                            failures.incrementAndGet();
+                            System.err.println("Session " + session + " turn " + turn + " failed: " + e.getMessage());
+                        }
+                    }
+                    transcripts.add(simulator.getTranscript("session-" + session));
+                });
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+
+        long[] sorted = latencies.stream().mapToLong(Long::longValue).sorted().toArray();
+        System.out.printf("%d sessions x %d turns in %.1fs: ok=%d failed=%d%n", sessions, turns,
+                elapsed / 1e9, sorted.length, failures.get());
+        if (sorted.length > 0) {
+            System.out.printf("Turn latency: p50=%dms p95=%dms max=%dms%n",
+                    TimeUnit.NANOSECONDS.toMillis(sorted[sorted.length / 2]),
+                    TimeUnit.NANOSECONDS.toMillis(sorted[(int) Math.ceil(sorted.length * 0.95) - 1]),
+                    TimeUnit.NANOSECONDS.toMillis(sorted[sorted.length - 1]));
+        }
+        System.out.println("Stub: " + stub.describeStats());
+        System.out.println("Transport: " + http.describeStats());
+        System.out.println("Resilience: " + resilient.describeStats());
+        System.out.println("Rate limits: " + RateLimiter.shared().describe());
+        System.out.println("Tokens: " + TokenUsageStats.describe());
+
+        boolean batchesOk = checkBatchGrading(stub, transcripts);
+        stub.stop();
+        System.exit(failures.get() == 0 && batchesOk ? 0 : 1);
+    }
+
+    /**
+     * Grades the soak test's transcripts through the batch endpoints and checks that every
+     * scoring and evaluation request comes back with one of the scripted answers
+     */
+    private static boolean checkBatchGrading(StubMessagesServer stub,
+                                             List<CharacterConversationSimulator.Transcript> transcripts) throws Exception {
+        // Batch creation is not retried, so errors would only make the check flaky
+        stub.setErrorRates(Collections.emptyMap());
+        stub.setScores(3, 9);
+        stub.setVerdicts(true);
+
+        int expected = 0;
+        for (CharacterConversationSimulator.Transcript transcript : transcripts) {
+            // One score per user message that got a reply, plus the verdict
+            expected += transcript.messages.size() / 2 + 1;
+        }
+
+        List<BatchGrader.Grade> grades = Collections.synchronizedList(new ArrayList<>());
+        CharacterConversationSimulator.gradeTranscripts(transcripts, grades::add);
+
+        int wrong = 0;
+        for (BatchGrader.Grade grade : grades) {
+            boolean scripted = grade.kind == BatchGrader.Kind.SCORE ? grade.score == 3 || grade.score == 9 : grade.romanced;
+            if (!grade.succeeded() || !scripted) {
+                wrong++;
+                System.err.println("Unexpected grade: " + grade);
+            }
+        }
+        System.out.printf("Batch grading: %d of %d grades, %d unexpected%n", grades.size(), expected, wrong);
+        return grades.size() == expected && wrong == 0;
+    }
+}
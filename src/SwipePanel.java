@@ -2,24 +2,22 @@ import javax.swing.*;
 import javax.swing.border.AbstractBorder;
 import java.awt.*;
 import java.awt.geom.RoundRectangle2D;
+import java.awt.image.BufferedImage;
 import java.util.*;
 import java.util.List;
-import java.io.IOException;
-import java.io.File;
-import java.nio.file.Files;
-import java.nio.file.Paths;
-import javax.imageio.ImageIO;
+import java.util.concurrent.CompletableFuture;
 
 class SwipePanel extends JPanel {
     private String userName;
     private String userBio;
     private String userImagePath;
-    private List<ClashCard> cards;
-    private int currentIndex = 0;
+    private CardRanker ranker;
+    private ClashCard currentCard;
     private List<ClashCard> matches;
     private Image pekkaImage;
     private ImageIcon cryingGif;
     private java.util.List<Image> backgroundImages;
+    private final BackgroundRenderer background = new BackgroundRenderer(this::paintBackground);
 
     // User preferences
     private int preferredHeightFeet;
@@ -35,6 +33,29 @@ class SwipePanel extends JPanel {
     private static final Color CLASH_GOLD = new Color(255, 183, 77);
     private static final Color CARD_BG = new Color(255, 255, 255, 250);
 
+    // Card photos are scaled to fit this square, and this many upcoming cards are loaded ahead
+    private static final int CARD_PHOTO_SIZE = 200;
+    private static final int PREFETCH_CARDS = 3;
+
+    private static final String PEKKA_IMAGE = "/resources/6f9b3f2201c9af83c69aeb604f64e25d.jpg";
+    private static final String CRYING_GIF = "/resources/crying.gif";
+    private static final String[] BACKGROUND_IMAGES = {
+        "/resources/6f9b3f2201c9af83c69aeb604f64e25d.jpg",
+        "/resources/clash-royale_nten.jpg",
+        "/resources/in-a-realistic-sense-if-all-the-troops-from-clash-royale-v0-jlghikjobhpf1.png.webp",
+        "/resources/explained-when-did-clash-royale-come-out-release-date-history.jpg",
+        "/resources/clashroyale-1653673820137.jpg.webp"
+    };
+
+    /**
+     * Decodes this screen's images ahead of time so constructing the panel does not touch the disk
+     */
+    public static void preloadAssets() {
+        AssetRegistry.image(PEKKA_IMAGE);
+        AssetRegistry.icon(CRYING_GIF);
+        AssetRegistry.images(BACKGROUND_IMAGES);
+    }
+
     public SwipePanel(JFrame parent, String name, String bio, int heightFeet, int heightInches,
                       String attackRange, int freeTime, int humanness, String preference, String imagePath) {
         this.userName = name;
@@ -68,45 +89,27 @@ class SwipePanel extends JPanel {
     }
 
     private void loadImages() {
-        backgroundImages = new ArrayList<>();
-        try {
-            pekkaImage = ImageIO.read(getClass().getResourceAsStream("/resources/6f9b3f2201c9af83c69aeb604f64e25d.jpg"));
-            cryingGif = new ImageIcon(getClass().getResource("/resources/crying.gif"));
-
-            // Load background images
-            String[] imageFiles = {
-                "/resources/6f9b3f2201c9af83c69aeb604f64e25d.jpg",
-                "/resources/clash-royale_nten.jpg",
-                "/resources/in-a-realistic-sense-if-all-the-troops-from-clash-royale-v0-jlghikjobhpf1.png.webp",
-                "/resources/explained-when-did-clash-royale-come-out-release-date-history.jpg",
-                "/resources/clashroyale-1653673820137.jpg.webp"
-            };
+        // Images are shared across panels, so a restart does not decode them again
+        pekkaImage = AssetRegistry.image(PEKKA_IMAGE);
+        cryingGif = AssetRegistry.icon(CRYING_GIF);
 
-            for (String imagePath : imageFiles) {
-                try {
-                    Image img = ImageIO.read(getClass().getResourceAsStream(imagePath));
-                    if (img != null) {
-                        backgroundImages.add(img);
-                    }
-                } catch (Exception e) {
-                    System.err.println("Could not load: " + imagePath);
-                }
-            }
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+        // Load background images
+        backgroundImages = AssetRegistry.images(BACKGROUND_IMAGES);
     }
 
     @Override
     protected void paintComponent(Graphics g) {
         super.paintComponent(g);
-        Graphics2D g2d = (Graphics2D) g;
+        background.paint(g, this);
+    }
+
+    /**
+     * Paints the static background; BackgroundRenderer caches the result until the panel is resized
+     */
+    private void paintBackground(Graphics2D g2d, int width, int height) {
         g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
         g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
 
-        int width = getWidth();
-        int height = getHeight();
-
         // Draw gradient background
         GradientPaint gradient = new GradientPaint(0, 0, CLASH_BLUE, 0, height, CLASH_DARK_BLUE);
         g2d.setPaint(gradient);
@@ -175,228 +178,48 @@ class SwipePanel extends JPanel {
     }
 
     private void initializeCards() {
-        cards = new ArrayList<>();
-
-        try {
-            // Load JSON file - try multiple paths
-            String content = null;
-            String[] possiblePaths = {
-                "clash_royale_cards_updated.json",         // When running from src directory
-                "src/clash_royale_cards_updated.json",     // When running from root
-                "../clash_royale_cards_updated.json"
-            };
+        CardCatalog catalog = CardCatalog.get();
+        CardIndex cards;
 
-            for (String path : possiblePaths) {
-                File jsonFile = new File(path);
-                if (jsonFile.exists()) {
-                    content = new String(Files.readAllBytes(Paths.get(path)));
-                    System.out.println("Loaded JSON from: " + path);
-                    break;
-                }
-            }
-
-            if (content == null) {
-                System.err.println("Could not find clash_royale_cards_updated.json");
-                return;
-            }
-
-            // Simple JSON parsing - split by card objects
-            String[] cardStrings = content.split("\\},\\s*\\{");
-
-            for (String cardStr : cardStrings) {
-                // Clean up the string
-                cardStr = cardStr.replace("[", "").replace("]", "").replace("{", "").replace("}", "");
-
-                // Parse fields
-                String cardName = extractJsonString(cardStr, "card_name");
-                String image = extractJsonString(cardStr, "image");
-                String height = extractJsonString(cardStr, "height");
-                String attackRange = extractJsonString(cardStr, "attack_range");
-                double freeTime = extractJsonDouble(cardStr, "free_time");
-                double humanoidScore = extractJsonDouble(cardStr, "humanoid_score");
-                String category = extractJsonString(cardStr, "category");
-                String personality = extractJsonString(cardStr, "personality");
-
-                // Filter based on sexual preference
-                if (sexualPreference.equals("Something Else")) {
-                    // Only show buildings
-                    if (!category.equals("building")) {
-                        continue;
-                    }
-                } else {
-                    // For "Straight" - only show troops (exclude buildings and mega knight)
-                    if (category.equals("building") || category.equals("mega knight")) {
-                        continue;
-                    }
-                }
-
-                ClashCard card = new ClashCard(cardName, image, height, attackRange,
-                                               freeTime, humanoidScore, category, personality);
-                cards.add(card);
-            }
-
-            // Score and sort cards by compatibility
-            scoreAndSortCards();
+        if (sexualPreference.equals("Something Else")) {
+            // Only show buildings
+            cards = catalog.index("buildings", card -> card.category.equals("building"));
+        } else {
+            // For "Straight" - only show troops (exclude buildings and mega knight)
+            cards = catalog.index("troops",
+                    card -> !card.category.equals("building") && !card.category.equals("mega knight"));
+        }
 
-            System.out.println("Loaded " + cards.size() + " cards from JSON (filtered by preference: " + sexualPreference + ")");
-            System.out.println("Cards sorted by compatibility score");
+        // Cards are handed out best first as the user swipes
+        rankCards(cards);
+        currentCard = ranker.next();
 
-        } catch (Exception e) {
-            System.err.println("Error loading cards from JSON: " + e.getMessage());
-            e.printStackTrace();
-        }
+        System.out.println("Loaded " + cards.size() + " cards from JSON (filtered by preference: " + sexualPreference + ")");
+        System.out.println("Cards ranked by compatibility score");
     }
 
-    private void scoreAndSortCards() {
-        // Calculate compatibility score for each card
-        for (ClashCard card : cards) {
-            double totalScore = 0;
-
-            // 1. Height matching (convert to total inches for comparison)
-            int userHeightInches = (preferredHeightFeet * 12) + preferredHeightInches;
-            int cardHeightInches = (card.heightFeet * 12) + card.heightInches;
-            int heightDifference = Math.abs(userHeightInches - cardHeightInches);
-            double heightScore = Math.max(0, 100 - (heightDifference * 2.0)); // 2 points penalty per inch
-            totalScore += heightScore;
-
-            // 2. Attack range matching
-            int userRangeValue = attackRangeToValue(preferredAttackRange);
-            int cardRangeValue = attackRangeToValue(card.attackRange);
-            int rangeDifference = Math.abs(userRangeValue - cardRangeValue);
-            double rangeScore = Math.max(0, 100 - (rangeDifference * 25.0)); // 25 points penalty per level
-            totalScore += rangeScore;
-
-            // 3. Free time matching (convert card's 0-1 to 0-100)
-            double cardFreeTimePercent = card.freeTime * 100;
-            double freeTimeDifference = Math.abs(preferredFreeTime - cardFreeTimePercent);
-            double freeTimeScore = Math.max(0, 100 - freeTimeDifference); // 1 point penalty per percent
-            totalScore += freeTimeScore;
-
-            // 4. Humanness matching (convert card's 0-1 to 0-100)
-            double cardHumannessPercent = card.humanoidScore * 100;
-            double humannessDifference = Math.abs(preferredHumanness - cardHumannessPercent);
-            double humannessScore = Math.max(0, 100 - humannessDifference); // 1 point penalty per percent
-            totalScore += humannessScore;
-
-            // Store the total compatibility score
-            card.compatibilityScore = totalScore;
-        }
-
-        // Sort cards by compatibility score (highest to lowest)
-        cards.sort((c1, c2) -> Double.compare(c2.compatibilityScore, c1.compatibilityScore));
+    private void rankCards(CardIndex candidates) {
+        // Cards are shared and immutable, so scores for this user live in the ranker rather than on the card
+        ranker = new CardRanker(candidates, new CardRanker.Preferences(preferredHeightFeet, preferredHeightInches,
+                preferredAttackRange, preferredFreeTime, preferredHumanness));
 
         // Debug: Print top 5 matches
         System.out.println("\nTop 5 Matches:");
-        for (int i = 0; i < Math.min(5, cards.size()); i++) {
-            ClashCard c = cards.get(i);
-            System.out.printf("%d. %s - Score: %.1f\n", i + 1, c.name, c.compatibilityScore);
-        }
-    }
-
-    private int attackRangeToValue(String range) {
-        switch (range.toLowerCase()) {
-            case "short": return 1;
-            case "medium": return 2;
-            case "long": return 3;
-            case "extra long":
-            case "x-long": return 4;
-            default: return 2; // Default to medium
+        List<ClashCard> top = ranker.peek(5);
+        for (int i = 0; i < top.size(); i++) {
+            ClashCard c = top.get(i);
+            System.out.printf("%d. %s - Score: %.1f\n", i + 1, c.name, ranker.score(c));
         }
     }
 
-    private String cleanImagePath(String imagePath) {
-        // Remove leading ./ if present
-        if (imagePath.startsWith("./")) {
-            imagePath = imagePath.substring(2);
-        }
-        // Remove leading images/ if present
-        if (imagePath.startsWith("images/")) {
-            imagePath = imagePath.substring(7);
-        }
-        return imagePath;
-    }
-
     private void initializeCardsForMegaKnight() {
-        cards = new ArrayList<>();
-
-        try {
-            // Load JSON file - try multiple paths
-            String content = null;
-            String[] possiblePaths = {
-                "clash_royale_cards_updated.json",
-                "src/clash_royale_cards_updated.json",
-                "../clash_royale_cards_updated.json"
-            };
-
-            for (String path : possiblePaths) {
-                File jsonFile = new File(path);
-                if (jsonFile.exists()) {
-                    content = new String(Files.readAllBytes(Paths.get(path)));
-                    break;
-                }
-            }
-
-            if (content == null) {
-                System.err.println("Could not find clash_royale_cards_updated.json");
-                return;
-            }
-
-            // Find Mega Knight
-            String[] cardStrings = content.split("\\},\\s*\\{");
-
-            for (String cardStr : cardStrings) {
-                cardStr = cardStr.replace("[", "").replace("]", "").replace("{", "").replace("}", "");
-
-                String cardName = extractJsonString(cardStr, "card_name");
-                if (cardName.equals("Mega Knight")) {
-                    String image = extractJsonString(cardStr, "image");
-                    String height = extractJsonString(cardStr, "height");
-                    String attackRange = extractJsonString(cardStr, "attack_range");
-                    double freeTime = extractJsonDouble(cardStr, "free_time");
-                    double humanoidScore = extractJsonDouble(cardStr, "humanoid_score");
-                    String category = extractJsonString(cardStr, "category");
-                    String personality = extractJsonString(cardStr, "personality");
-
-                    ClashCard megaKnight = new ClashCard(cardName, image, height, attackRange,
-                                                          freeTime, humanoidScore, category, personality);
-                    matches.add(megaKnight);
-                    System.out.println("Instant match with Mega Knight!");
-                    break;
-                }
-            }
-
-        } catch (Exception e) {
-            System.err.println("Error loading Mega Knight: " + e.getMessage());
-            e.printStackTrace();
-        }
-    }
-
-    private String extractJsonString(String json, String key) {
-        try {
-            String pattern = "\"" + key + "\":\\s*\"([^\"]+)\"";
-            java.util.regex.Pattern p = java.util.regex.Pattern.compile(pattern);
-            java.util.regex.Matcher m = p.matcher(json);
-            if (m.find()) {
-                return m.group(1);
-            }
-        } catch (Exception e) {
-            System.err.println("Error extracting " + key + ": " + e.getMessage());
-        }
-        return "";
-    }
-
-    private double extractJsonDouble(String json, String key) {
-        try {
-            String pattern = "\"" + key + "\":\\s*([0-9.]+)";
-            java.util.regex.Pattern p = java.util.regex.Pattern.compile(pattern);
-            java.util.regex.Matcher m = p.matcher(json);
-            if (m.find()) {
-                return Double.parseDouble(m.group(1));
-            }
-        } catch (Exception e) {
-            System.err.println("Error extracting " + key + ": " + e.getMessage());
+        ClashCard megaKnight = CardCatalog.get().byName("Mega Knight");
+        if (megaKnight != null) {
+            matches.add(megaKnight);
+            System.out.println("Instant match with Mega Knight!");
+        } else {
+            System.err.println("Error loading Mega Knight: not in card catalog");
         }
-        return 0.0;
     }
 
     private String generateBio(ClashCard card) {
@@ -426,15 +249,19 @@ class SwipePanel extends JPanel {
         removeAll();
         setLayout(new BorderLayout(0, 0));
 
-        if (currentIndex >= cards.size()) {
+        if (currentCard == null) {
             showMatches(parent);
             return;
         }
 
-        ClashCard card = cards.get(currentIndex);
+        ClashCard card = currentCard;
+        List<ClashCard> upcoming = ranker.peek(PREFETCH_CARDS);
 
-        // Play deploy sound for the card
+        // Play deploy sound for the card, and get the next card's ready
         AudioPlayer.playDeploySound(card.name);
+        if (!upcoming.isEmpty()) {
+            AudioPlayer.preloadDeploySound(upcoming.get(0).name);
+        }
 
         // Title
         JPanel topPanel = new JPanel();
@@ -464,50 +291,25 @@ class SwipePanel extends JPanel {
         // Profile photo
         JLabel photoLabel = new JLabel();
         photoLabel.setAlignmentX(Component.CENTER_ALIGNMENT);
-        try {
-            // Load card's specific image - try multiple paths
-            Image cardImage = null;
-            String cleanImagePath = cleanImagePath(card.image);
-
-            String[] possiblePaths = {
-                "images/" + cleanImagePath,                // When running from src directory
-                "src/images/" + cleanImagePath,            // When running from root
-                "../images/" + cleanImagePath
-            };
-
-            for (String path : possiblePaths) {
-                File imageFile = new File(path);
-                if (imageFile.exists()) {
-                    cardImage = ImageIO.read(imageFile);
-                    if (cardImage != null) {
-                        break;
-                    }
+        BufferedImage cardImage = CardImagePipeline.getIfReady(card, CARD_PHOTO_SIZE);
+        if (cardImage != null) {
+            photoLabel.setIcon(new ImageIcon(cardImage));
+        } else {
+            // Keep the layout stable while the image loads in the background
+            photoLabel.setPreferredSize(new Dimension(CARD_PHOTO_SIZE, CARD_PHOTO_SIZE));
+            photoLabel.setHorizontalAlignment(SwingConstants.CENTER);
+            CardImagePipeline.load(card, CARD_PHOTO_SIZE).thenAccept(loaded -> SwingUtilities.invokeLater(() -> {
+                if (loaded != null) {
+                    photoLabel.setIcon(new ImageIcon(loaded));
+                } else {
+                    // Show a placeholder text
+                    photoLabel.setText("[" + card.name + "]");
+                    photoLabel.setFont(Fonts.ClashFontLarge);
+                    photoLabel.setForeground(Color.GRAY);
                 }
-            }
-
-            if (cardImage != null) {
-                // Scale image while maintaining aspect ratio
-                int maxSize = 200;
-                int originalWidth = cardImage.getWidth(null);
-                int originalHeight = cardImage.getHeight(null);
-
-                double scale = Math.min((double) maxSize / originalWidth, (double) maxSize / originalHeight);
-                int scaledWidth = (int) (originalWidth * scale);
-                int scaledHeight = (int) (originalHeight * scale);
-
-                Image scaled = cardImage.getScaledInstance(scaledWidth, scaledHeight, Image.SCALE_SMOOTH);
-                photoLabel.setIcon(new ImageIcon(scaled));
-            } else {
-                System.err.println("Warning: Could not load image for " + card.name + ": " + card.image);
-                // Show a placeholder text
-                photoLabel.setText("[" + card.name + "]");
-                photoLabel.setFont(Fonts.ClashFontLarge);
-                photoLabel.setForeground(Color.GRAY);
-            }
-        } catch (Exception e) {
-            System.err.println("ERROR loading image for " + card.name + ": " + e.getMessage());
-            e.printStackTrace();
+            }));
         }
+        CardImagePipeline.prefetch(upcoming, CARD_PHOTO_SIZE);
         contentPanel.add(Box.createVerticalStrut(20));
         contentPanel.add(photoLabel);
         contentPanel.add(Box.createVerticalStrut(15));
@@ -595,6 +397,28 @@ class SwipePanel extends JPanel {
         repaint();
     }
 
+    /**
+     * Shows a card photo as soon as it has loaded, holding its space in the layout until then
+     */
+    private JLabel createCardPhotoLabel(CompletableFuture<BufferedImage> image, int width, int height) {
+        JLabel photoLabel = new JLabel();
+        photoLabel.setAlignmentX(Component.CENTER_ALIGNMENT);
+        photoLabel.setHorizontalAlignment(SwingConstants.CENTER);
+
+        BufferedImage ready = image.getNow(null);
+        if (ready != null) {
+            photoLabel.setIcon(new ImageIcon(ready));
+        } else {
+            photoLabel.setPreferredSize(new Dimension(width, height));
+            image.thenAccept(loaded -> {
+                if (loaded != null) {
+                    SwingUtilities.invokeLater(() -> photoLabel.setIcon(new ImageIcon(loaded)));
+                }
+            });
+        }
+        return photoLabel;
+    }
+
     private JLabel createStatLabel(String text) {
         JLabel label = new JLabel(text);
         label.setFont(Fonts.ClashFontSmall);
@@ -640,14 +464,14 @@ class SwipePanel extends JPanel {
     private void swipe(JFrame parent, boolean liked) {
         if (liked) {
             if (Math.random() > 0.2) {
-                ClashCard matchedCard = cards.get(currentIndex);
+                ClashCard matchedCard = currentCard;
                 matches.add(matchedCard);
                 // Immediately transition to chat with matched card
                 transitionToChat(parent, matchedCard);
                 return;
             }
         }
-        currentIndex++;
+        currentCard = ranker.next();
         showCurrentCard(parent);
     }
 
@@ -678,42 +502,7 @@ class SwipePanel extends JPanel {
 
         // Add card photo
         matchPanel.add(Box.createVerticalStrut(20));
-        try {
-            Image cardImage = null;
-            String cleanImagePath = cleanImagePath(matchedCard.image);
-            String[] possiblePaths = {
-                "images/" + cleanImagePath,
-                "src/images/" + cleanImagePath,
-                "../images/" + cleanImagePath
-            };
-
-            for (String path : possiblePaths) {
-                File imageFile = new File(path);
-                if (imageFile.exists()) {
-                    cardImage = ImageIO.read(imageFile);
-                    break;
-                }
-            }
-
-            if (cardImage == null) {
-                // Try loading as resource
-                String imagePath = "/images/" + cleanImagePath;
-                try {
-                    cardImage = ImageIO.read(getClass().getResourceAsStream(imagePath));
-                } catch (Exception e) {
-                    System.err.println("Could not load card image: " + imagePath);
-                }
-            }
-
-            if (cardImage != null) {
-                Image scaledImage = cardImage.getScaledInstance(300, 300, Image.SCALE_SMOOTH);
-                JLabel imageLabel = new JLabel(new ImageIcon(scaledImage));
-                imageLabel.setAlignmentX(Component.CENTER_ALIGNMENT);
-                matchPanel.add(imageLabel);
-            }
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
+        matchPanel.add(createCardPhotoLabel(CardImagePipeline.loadExact(matchedCard, 300, 300), 300, 300));
 
         matchPanel.add(Box.createVerticalStrut(20));
 
@@ -749,7 +538,7 @@ class SwipePanel extends JPanel {
 
         JButton continueButton = createStyledButton("KEEP SWIPING", CLASH_BLUE);
         continueButton.addActionListener(e -> {
-            currentIndex++;
+            currentCard = ranker.next();
             showCurrentCard(parent);
         });
 
@@ -785,27 +574,7 @@ class SwipePanel extends JPanel {
 
         // Add Mega Knight photo
         matchPanel.add(Box.createVerticalStrut(20));
-        try {
-            Image cardImage = null;
-            String cleanImagePath = cleanImagePath(megaKnight.image);
-            String imagePath = "/images/" + cleanImagePath;
-            try {
-                cardImage = ImageIO.read(getClass().getResourceAsStream(imagePath));
-                System.out.println("Successfully loaded Mega Knight image from: " + imagePath);
-            } catch (Exception e) {
-                System.err.println("Could not load card image: " + imagePath);
-                e.printStackTrace();
-            }
-
-            if (cardImage != null) {
-                Image scaledImage = cardImage.getScaledInstance(300, 300, Image.SCALE_SMOOTH);
-                JLabel imageLabel = new JLabel(new ImageIcon(scaledImage));
-                imageLabel.setAlignmentX(Component.CENTER_ALIGNMENT);
-                matchPanel.add(imageLabel);
-            }
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
+        matchPanel.add(createCardPhotoLabel(CardImagePipeline.loadExact(megaKnight, 300, 300), 300, 300));
 
         matchPanel.add(Box.createVerticalStrut(20));
 
@@ -892,42 +661,8 @@ class SwipePanel extends JPanel {
 
             // Add top match photo
             matchesPanel.add(Box.createVerticalStrut(20));
-            try {
-                Image cardImage = null;
-                String cleanImagePath = cleanImagePath(topMatch.image);
-                String[] possiblePaths = {
-                    "images/" + cleanImagePath,             // When running from src directory
-                    "src/images/" + cleanImagePath,         // When running from root
-                    "../images/" + cleanImagePath
-                };
-
-                for (String path : possiblePaths) {
-                    File imageFile = new File(path);
-                    if (imageFile.exists()) {
-                        cardImage = ImageIO.read(imageFile);
-                        break;
-                    }
-                }
-
-                if (cardImage != null) {
-                    // Scale image while maintaining aspect ratio
-                    int maxSize = 150;
-                    int originalWidth = cardImage.getWidth(null);
-                    int originalHeight = cardImage.getHeight(null);
-
-                    double scale = Math.min((double) maxSize / originalWidth, (double) maxSize / originalHeight);
-                    int scaledWidth = (int) (originalWidth * scale);
-                    int scaledHeight = (int) (originalHeight * scale);
-
-                    Image scaled = cardImage.getScaledInstance(scaledWidth, scaledHeight, Image.SCALE_SMOOTH);
-                    JLabel photoLabel = new JLabel(new ImageIcon(scaled));
-                    photoLabel.setAlignmentX(Component.CENTER_ALIGNMENT);
-                    matchesPanel.add(photoLabel);
-                    matchesPanel.add(Box.createVerticalStrut(15));
-                }
-            } catch (Exception e) {
-                System.err.println("Could not load match image: " + e.getMessage());
-            }
+            matchesPanel.add(createCardPhotoLabel(CardImagePipeline.load(topMatch, 150), 150, 150));
+            matchesPanel.add(Box.createVerticalStrut(15));
 
             JLabel topLabel = new JLabel("TOP MATCH: " + topMatch.name);
             topLabel.setFont(Fonts.ClashFontLarge);
@@ -989,18 +724,20 @@ class SwipePanel extends JPanel {
     }
 }
 
+/**
+ * One card from the catalog. Cards are immutable and shared by every panel, see CardCatalog.
+ */
 class ClashCard {
-    String name;
-    String image;
-    String height;
-    String attackRange;
-    double freeTime;
-    double humanoidScore;
-    String category;
-    String personality;
-    int heightFeet;
-    int heightInches;
-    double compatibilityScore = 0; // Matching score based on user preferences
+    final String name;
+    final String image;
+    final String height;
+    final String attackRange;
+    final double freeTime;
+    final double humanoidScore;
+    final String category;
+    final String personality;
+    final int heightFeet;
+    final int heightInches;
 
     public ClashCard(String name, String image, String height, String attackRange,
                      double freeTime, double humanoidScore, String category, String personality) {
@@ -1014,20 +751,22 @@ class ClashCard {
         this.personality = personality;
 
         // Parse height string like "6'0\"" into feet and inches
-        parseHeight(height);
+        int[] feetAndInches = parseHeight(height);
+        this.heightFeet = feetAndInches[0];
+        this.heightInches = feetAndInches[1];
     }
 
-    private void parseHeight(String heightStr) {
+    private static int[] parseHeight(String heightStr) {
         try {
             // Remove quotes and backslashes
             String cleaned = heightStr.replace("\\", "").replace("\"", "");
             String[] parts = cleaned.split("'");
-            this.heightFeet = Integer.parseInt(parts[0].trim());
-            this.heightInches = parts.length > 1 ? Integer.parseInt(parts[1].trim()) : 0;
+            int feet = Integer.parseInt(parts[0].trim());
+            int inches = parts.length > 1 ? Integer.parseInt(parts[1].trim()) : 0;
+            return new int[]{feet, inches};
         } catch (Exception e) {
             System.err.println("Error parsing height '" + heightStr + "': " + e.getMessage());
-            this.heightFeet = 5;
-            this.heightInches = 0;
+            return new int[]{5, 0};
         }
     }
 }
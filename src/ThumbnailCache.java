@@ -0,0 +1,237 @@
+import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+
+/**
+ * Keeps scaled card images on disk between runs.
+ * Each thumbnail is stored as deflated premultiplied ARGB pixels in one file per source path and
+ * target size; the source's modification time is kept in the header, so an edited source replaces
+ * its old thumbnail rather than leaving it behind. A hit memory-maps the file and inflates straight
+ * from the mapping, skipping decoding the full-size PNG entirely.
+ * The directory is capped in size, evicting the thumbnails least recently used first.
+ */
+public class ThumbnailCache {
+
+    private static final int MAGIC = 0x43525432; // "CRT2"
+    // Magic, source modification time, width, height
+    private static final int HEADER_BYTES = 4 + 8 + 4 + 4;
+    private static final String EXTENSION = ".thumb";
+    // Card art is a few hundred pixels a side; anything larger is a corrupt header
+    private static final int MAX_EDGE = 4096;
+    private static final long MAX_CACHE_BYTES = 32L * 1024 * 1024;
+    // Temp files older than this were left by a run that died mid-write
+    private static final long STALE_TEMP_MILLIS = 60_000;
+
+    private static final File CACHE_DIR = new File(System.getProperty("user.home"),
+            ".clash_royale_dating/thumbnails");
+
+    private static volatile boolean enabled = true;
+    private static final AtomicBoolean swept = new AtomicBoolean();
+    // Thumbnails already marked as used this run
+    private static final Set<File> touched = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Turns the disk cache on or off, for example when the home directory is read-only
+     */
+    public static void setEnabled(boolean enabled) {
+        ThumbnailCache.enabled = enabled;
+    }
+
+    /**
+     * Reads a cached thumbnail, or returns null if there is none for this source and variant
+     * @param variant describes the target size, such as "fit200" or "300x300"
+     */
+    public static BufferedImage get(File source, String variant) {
+        if (!enabled) {
+            return null;
+        }
+        File file = cacheFile(source, variant);
+        if (!file.isFile()) {
+            return null;
+        }
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_BYTES) {
+                return null;
+            }
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            // A thumbnail of an older version of the source is a miss; put() overwrites it
+            if (mapped.getInt() != MAGIC || mapped.getLong() != source.lastModified()) {
+                return null;
+            }
+            int width = mapped.getInt();
+            int height = mapped.getInt();
+            if (width <= 0 || height <= 0 || width > MAX_EDGE || height > MAX_EDGE) {
+                return null;
+            }
+
+            ByteBuffer raw = ByteBuffer.allocate(4 * width * height);
+            Inflater inflater = new Inflater();
+            try {
+                inflater.setInput(mapped);
+                while (raw.hasRemaining() && !inflater.finished()) {
+                    if (inflater.inflate(raw) == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                        break;
+                    }
+                }
+            } finally {
+                inflater.end();
+            }
+            if (raw.hasRemaining()) {
+                System.err.println("Thumbnail " + file + " is truncated");
+                return null;
+            }
+            int[] pixels = new int[width * height];
+            raw.flip();
+            raw.asIntBuffer().get(pixels);
+
+            // Copy in through the raster rather than holding its array, which would stop Java2D caching the image
+            BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB_PRE);
+            image.getRaster().setDataElements(0, 0, width, height, pixels);
+
+            // The file time doubles as the last use, which is what the size cap evicts by. Eviction only
+            // happens once per run, so the first hit in a run is the only one worth a write.
+            if (touched.add(file)) {
+                file.setLastModified(System.currentTimeMillis());
+            }
+            return image;
+        } catch (IOException | DataFormatException e) {
+            System.err.println("Could not read thumbnail " + file + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Stores a thumbnail for a source file and variant. The image must be TYPE_INT_ARGB_PRE.
+     */
+    public static void put(File source, String variant, BufferedImage image) {
+        if (!enabled || image.getType() != BufferedImage.TYPE_INT_ARGB_PRE) {
+            return;
+        }
+        File file = cacheFile(source, variant);
+        int[] pixels = (int[]) image.getRaster().getDataElements(0, 0, image.getWidth(), image.getHeight(), null);
+        byte[] raw = new byte[4 * pixels.length];
+        ByteBuffer.wrap(raw).asIntBuffer().put(pixels);
+
+        Path temp = null;
+        try {
+            Files.createDirectories(CACHE_DIR.toPath());
+            if (swept.compareAndSet(false, true)) {
+                sweep();
+            }
+
+            // Write to a temp file and move it into place so readers never see a partial thumbnail
+            temp = Files.createTempFile(CACHE_DIR.toPath(), "thumb", ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(MAGIC);
+                out.writeLong(source.lastModified());
+                out.writeInt(image.getWidth());
+                out.writeInt(image.getHeight());
+                // Transparent borders and flat fills make card art compress several times over
+                Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+                try (DeflaterOutputStream deflated = new DeflaterOutputStream(out, deflater)) {
+                    deflated.write(raw);
+                } finally {
+                    deflater.end();
+                }
+            }
+            try {
+                Files.move(temp, file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                // Some file systems cannot replace atomically; a reader racing this sees a miss at worst
+                Files.move(temp, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            System.err.println("Could not write thumbnail " + file + ": " + e.getMessage());
+        } finally {
+            if (temp != null) {
+                try {
+                    Files.deleteIfExists(temp);
+                } catch (IOException e) {
+                    System.err.println("Could not delete " + temp + ": " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs once per process before the first write: removes temp files left by crashed runs and
+     * uncompressed thumbnails from older versions, then evicts the least recently used thumbnails
+     * until the directory is back under its cap
+     */
+    private static void sweep() {
+        File[] files = CACHE_DIR.listFiles();
+        if (files == null) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        List<File> thumbnails = new ArrayList<>();
+        // Snapshot the times, as hits on other threads keep touching them
+        Map<File, Long> lastUsed = new HashMap<>();
+        long totalBytes = 0;
+        for (File file : files) {
+            String name = file.getName();
+            if (name.endsWith(EXTENSION)) {
+                thumbnails.add(file);
+                lastUsed.put(file, file.lastModified());
+                totalBytes += file.length();
+            } else if (name.endsWith(".argb") || (name.endsWith(".tmp") && now - file.lastModified() > STALE_TEMP_MILLIS)) {
+                file.delete();
+            }
+        }
+
+        thumbnails.sort(Comparator.comparingLong(lastUsed::get));
+        for (File thumbnail : thumbnails) {
+            if (totalBytes <= MAX_CACHE_BYTES) {
+                break;
+            }
+            long length = thumbnail.length();
+            if (thumbnail.delete()) {
+                totalBytes -= length;
+            }
+        }
+    }
+
+    private static File cacheFile(File source, String variant) {
+        String key = source.getAbsolutePath() + "|" + variant;
+        return new File(CACHE_DIR, hash(key) + EXTENSION);
+    }
+
+    private static String hash(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(key.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder();
+            for (int i = 0; i < 12; i++) {
+                hex.append(String.format("%02x", digest[i]));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            return Integer.toHexString(key.hashCode());
+        }
+    }
+}
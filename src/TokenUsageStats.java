@@ -0,0 +1,60 @@
+import java.util.concurrent.atomic.AtomicLong;
+import org.json.JSONObject;
+
+/**
+ * Process-wide token counters taken from the "usage" object of each API response.
+ * Cache read and creation counts show whether the static system prompts are being served from the prompt cache.
+ */
+public class TokenUsageStats {
+    private static final AtomicLong responses = new AtomicLong();
+    private static final AtomicLong inputTokens = new AtomicLong();
+    private static final AtomicLong outputTokens = new AtomicLong();
+    private static final AtomicLong cacheReadInputTokens = new AtomicLong();
+    private static final AtomicLong cacheCreationInputTokens = new AtomicLong();
+
+    /**
+     * Adds a usage object to the totals. Streaming responses report usage in pieces, so missing fields count as zero.
+     */
+    public static void record(JSONObject usage) {
+        if (usage == null) {
+            return;
+        }
+        if (usage.has("input_tokens")) {
+            responses.incrementAndGet();
+        }
+        inputTokens.addAndGet(usage.optLong("input_tokens", 0));
+        outputTokens.addAndGet(usage.optLong("output_tokens", 0));
+        cacheReadInputTokens.addAndGet(usage.optLong("cache_read_input_tokens", 0));
+        cacheCreationInputTokens.addAndGet(usage.optLong("cache_creation_input_tokens", 0));
+    }
+
+    public static long getInputTokens() {
+        return inputTokens.get();
+    }
+
+    public static long getOutputTokens() {
+        return outputTokens.get();
+    }
+
+    public static long getCacheReadInputTokens() {
+        return cacheReadInputTokens.get();
+    }
+
+    public static long getCacheCreationInputTokens() {
+        return cacheCreationInputTokens.get();
+    }
+
+    /**
+     * Fraction of all prompt tokens that were read from the cache
+     */
+    public static double getCacheHitRatio() {
+        long total = inputTokens.get() + cacheReadInputTokens.get() + cacheCreationInputTokens.get();
+        return total == 0 ? 0 : cacheReadInputTokens.get() / (double) total;
+    }
+
+    public static String describe() {
+        return String.format("responses=%d input=%d output=%d cacheRead=%d cacheWrite=%d hitRatio=%.2f",
+                responses.get(), getInputTokens(), getOutputTokens(),
+                getCacheReadInputTokens(), getCacheCreationInputTokens(), getCacheHitRatio());
+    }
+}